@@ -0,0 +1,3 @@
+# ViewHolderFactories通过类名查找注解处理器生成的工厂，通过反射调用ViewHolder的(View)构造方法
+-keep class * implements com.zhy.base.ViewHolderFactory { <init>(); }
+-keepclassmembers class * extends androidx.recyclerview.widget.RecyclerView$ViewHolder { <init>(android.view.View); }
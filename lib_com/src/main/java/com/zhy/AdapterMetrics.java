@@ -0,0 +1,257 @@
+package com.zhy;
+
+import android.os.Looper;
+import android.os.Trace;
+import android.util.SparseArray;
+
+/**
+ * adapter耗时统计，按viewType记录创建、inflate、绑定耗时的直方图以及缓存池未命中次数，
+ * 同时输出到{@link Trace}并转发给{@link Sink}。
+ * 通过{@link RecyclerEasyAdapter#setMetrics(AdapterMetrics)}开启，未设置时只多一次判空
+ */
+public class AdapterMetrics {
+    private final Sink mSink;
+    private final SparseArray<ViewTypeMetrics> mViewTypes = new SparseArray<>();
+    private final SparseArray<String> mCreateSections = new SparseArray<>();
+    private final SparseArray<String> mBindSections = new SparseArray<>();
+    private volatile boolean mTraceEnabled = true;
+    private boolean mPrewarming;
+
+    public AdapterMetrics() {
+        this(null);
+    }
+
+    /**
+     * @param sink 每次记录后回调，可以为null
+     */
+    public AdapterMetrics(Sink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * 设置是否输出Trace，默认输出
+     *
+     * @param traceEnabled
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        mTraceEnabled = traceEnabled;
+    }
+
+    /**
+     * 开始创建ViewHolder
+     *
+     * @param viewType
+     * @return 开始时间，传给{@link #endInflate}和{@link #endCreate}
+     */
+    public long beginCreate(int viewType) {
+        if (mTraceEnabled) {
+            Trace.beginSection(getSection(mCreateSections, "EasyAdapter.create:", viewType));
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * inflate布局完成
+     *
+     * @param viewType
+     * @param createStart {@link #beginCreate}返回的开始时间
+     */
+    public void endInflate(int viewType, long createStart) {
+        final long inflateNanos = System.nanoTime() - createStart;
+        getViewTypeMetrics(viewType).inflate.record(inflateNanos);
+    }
+
+    /**
+     * ViewHolder创建完成，主线程上非预创建的创建计为一次缓存池未命中
+     *
+     * @param viewType
+     * @param createStart {@link #beginCreate}返回的开始时间
+     */
+    public void endCreate(int viewType, long createStart) {
+        final long createNanos = System.nanoTime() - createStart;
+        if (mTraceEnabled) {
+            Trace.endSection();
+        }
+
+        final boolean poolMiss = !mPrewarming && Looper.myLooper() == Looper.getMainLooper();
+        final ViewTypeMetrics metrics = getViewTypeMetrics(viewType);
+        metrics.create.record(createNanos);
+        if (poolMiss) {
+            metrics.recordPoolMiss();
+        }
+        if (mSink != null) {
+            mSink.onCreate(viewType, createNanos, poolMiss);
+        }
+    }
+
+    /**
+     * 开始绑定ViewHolder
+     *
+     * @param viewType
+     * @return 开始时间，传给{@link #endBind}
+     */
+    public long beginBind(int viewType) {
+        if (mTraceEnabled) {
+            Trace.beginSection(getSection(mBindSections, "EasyAdapter.bind:", viewType));
+        }
+        return System.nanoTime();
+    }
+
+    public void endBind(int viewType, long bindStart) {
+        final long bindNanos = System.nanoTime() - bindStart;
+        if (mTraceEnabled) {
+            Trace.endSection();
+        }
+
+        getViewTypeMetrics(viewType).bind.record(bindNanos);
+        if (mSink != null) {
+            mSink.onBind(viewType, bindNanos);
+        }
+    }
+
+    /**
+     * 在主线程空闲时预创建ViewHolder期间调用，预创建不计为缓存池未命中
+     */
+    void setPrewarming(boolean prewarming) {
+        mPrewarming = prewarming;
+    }
+
+    /**
+     * 获取某个viewType的统计
+     *
+     * @param viewType
+     * @return
+     */
+    public synchronized ViewTypeMetrics getViewTypeMetrics(int viewType) {
+        ViewTypeMetrics metrics = mViewTypes.get(viewType);
+        if (metrics == null) {
+            metrics = new ViewTypeMetrics(viewType);
+            mViewTypes.put(viewType, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * 获取已有统计的viewType
+     *
+     * @return
+     */
+    public synchronized int[] getViewTypes() {
+        final int[] viewTypes = new int[mViewTypes.size()];
+        for (int i = 0; i < viewTypes.length; i++) {
+            viewTypes[i] = mViewTypes.keyAt(i);
+        }
+        return viewTypes;
+    }
+
+    public synchronized void reset() {
+        mViewTypes.clear();
+    }
+
+    private synchronized String getSection(SparseArray<String> sections, String prefix, int viewType) {
+        String section = sections.get(viewType);
+        if (section == null) {
+            section = prefix + viewType;
+            sections.put(viewType, section);
+        }
+        return section;
+    }
+
+    /**
+     * 单个viewType的统计
+     */
+    public static final class ViewTypeMetrics {
+        public final int viewType;
+        public final Histogram create = new Histogram();
+        public final Histogram inflate = new Histogram();
+        public final Histogram bind = new Histogram();
+        private long mPoolMisses;
+
+        ViewTypeMetrics(int viewType) {
+            this.viewType = viewType;
+        }
+
+        synchronized void recordPoolMiss() {
+            mPoolMisses++;
+        }
+
+        /**
+         * 缓存池未命中次数，即滑动过程中在主线程创建ViewHolder的次数
+         *
+         * @return
+         */
+        public synchronized long getPoolMisses() {
+            return mPoolMisses;
+        }
+    }
+
+    /**
+     * 耗时直方图，按微秒以2的幂分桶，第i个桶记录小于2^i微秒的耗时，最后一个桶记录其余耗时
+     */
+    public static final class Histogram {
+        public static final int BUCKET_COUNT = 16;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+        private long mCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+
+        synchronized void record(long nanos) {
+            final long micros = nanos / 1000;
+            final int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+            mBuckets[bucket]++;
+            mCount++;
+            mTotalNanos += nanos;
+            if (nanos > mMaxNanos) {
+                mMaxNanos = nanos;
+            }
+        }
+
+        public synchronized long getCount() {
+            return mCount;
+        }
+
+        public synchronized long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        public synchronized long getBucketCount(int bucket) {
+            return mBuckets[bucket];
+        }
+
+        /**
+         * 获取百分位耗时的上界
+         *
+         * @param percentile 0到100
+         * @return 单位微秒，最后一个桶返回{@link Long#MAX_VALUE}
+         */
+        public synchronized long getPercentileMicros(float percentile) {
+            final long target = (long) Math.ceil(mCount * percentile / 100f);
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                count += mBuckets[i];
+                if (count >= target)
+                    return 1L << i;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 统计输出，在创建或绑定ViewHolder的线程回调，需要尽快返回
+     */
+    public interface Sink {
+        /**
+         * @param viewType
+         * @param createNanos 创建耗时，包含inflate
+         * @param poolMiss    是否缓存池未命中
+         */
+        void onCreate(int viewType, long createNanos, boolean poolMiss);
+
+        void onBind(int viewType, long bindNanos);
+    }
+}
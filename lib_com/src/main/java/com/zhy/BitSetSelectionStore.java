@@ -0,0 +1,284 @@
+package com.zhy;
+
+import java.util.Arrays;
+
+/**
+ * 基于long[]位图的选中项存储，不会产生装箱。
+ * 另外使用int[]记录选择顺序，并按位置记录每个选中项在顺序数组中的下标，取消选中时只把该下标标记为空，
+ * 空位在顺序数组需要扩容或者{@link #toArray()}时一次性压缩。
+ * 判断、取消和{@link #size()}为O(1)，选中为均摊O(1)，全选和反选为O(n)，
+ * 按范围取消或反选按word处理，为O(范围/64 + 变化个数)，
+ * {@link #toArray()}为O(顺序数组长度)，空位不少于一半时先压缩再决定是否扩容
+ */
+public class BitSetSelectionStore implements SelectionStore {
+    private static final int ADDRESS_BITS = 6;
+    private static final int REMOVED = -1;
+
+    private long[] mWords = new long[1];
+    /**
+     * 选择顺序，取消选中的位置为{@link #REMOVED}
+     */
+    private int[] mOrder = new int[16];
+    /**
+     * 顺序数组已使用的长度，包括空位
+     */
+    private int mOrderLength;
+    /**
+     * 选中位置在顺序数组中的下标，只对选中的位置有效
+     */
+    private int[] mSlots = new int[64];
+    private int mSize;
+
+    @Override
+    public boolean contains(int position) {
+        if (position < 0)
+            return false;
+
+        final int index = position >>> ADDRESS_BITS;
+        return index < mWords.length && (mWords[index] & (1L << position)) != 0;
+    }
+
+    @Override
+    public boolean add(int position) {
+        if (position < 0)
+            throw new IllegalArgumentException("position < 0:" + position);
+
+        if (contains(position))
+            return false;
+
+        ensureWords(position + 1);
+        mWords[position >>> ADDRESS_BITS] |= 1L << position;
+        appendOrder(position);
+        return true;
+    }
+
+    @Override
+    public boolean remove(int position) {
+        if (!contains(position))
+            return false;
+
+        mWords[position >>> ADDRESS_BITS] &= ~(1L << position);
+        removeOrder(position);
+        return true;
+    }
+
+    @Override
+    public int removeRange(int positionStart, int itemCount) {
+        final int start = Math.max(positionStart, 0);
+        final int end = (int) Math.min((long) positionStart + itemCount, (long) mWords.length << ADDRESS_BITS);
+        if (start >= end || mSize == 0)
+            return 0;
+
+        int removed = 0;
+        final int lastWord = (end - 1) >>> ADDRESS_BITS;
+        for (int w = start >>> ADDRESS_BITS; w <= lastWord; w++) {
+            long word = mWords[w] & rangeMask(w, start, end);
+            if (word == 0)
+                continue;
+
+            mWords[w] &= ~word;
+            while (word != 0) {
+                removeOrder((w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word));
+                removed++;
+                word &= word - 1;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int toggleRange(int positionStart, int itemCount, int maxSize) {
+        final int start = Math.max(positionStart, 0);
+        final int end = positionStart + itemCount;
+        if (start >= end)
+            return 0;
+
+        ensureWords(end);
+        final int firstWord = start >>> ADDRESS_BITS;
+        final int lastWord = (end - 1) >>> ADDRESS_BITS;
+        // 先取消范围内已选中的位置，再计算还能选中的个数
+        int selected = 0;
+        for (int w = firstWord; w <= lastWord; w++) {
+            selected += Long.bitCount(mWords[w] & rangeMask(w, start, end));
+        }
+        int available = maxSize <= 0 ? Integer.MAX_VALUE : maxSize - (mSize - selected);
+
+        int added = 0;
+        for (int w = firstWord; w <= lastWord; w++) {
+            final long mask = rangeMask(w, start, end);
+            long removed = mWords[w] & mask;
+            long word = ~mWords[w] & mask;
+            mWords[w] &= ~removed;
+            while (removed != 0) {
+                removeOrder((w << ADDRESS_BITS) + Long.numberOfTrailingZeros(removed));
+                removed &= removed - 1;
+            }
+            while (word != 0 && available > 0) {
+                final int position = (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+                mWords[w] |= 1L << position;
+                appendOrder(position);
+                added++;
+                available--;
+                word &= word - 1;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mWords, 0L);
+        mSize = 0;
+        mOrderLength = 0;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public void selectAll(int itemCount) {
+        clear();
+        if (itemCount <= 0)
+            return;
+
+        ensureWords(itemCount);
+        final int fullWords = itemCount >>> ADDRESS_BITS;
+        Arrays.fill(mWords, 0, fullWords, -1L);
+        final int rest = itemCount & 63;
+        if (rest != 0) {
+            mWords[fullWords] = (1L << rest) - 1;
+        }
+
+        ensureOrder(itemCount);
+        ensureSlots(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            mOrder[i] = i;
+            mSlots[i] = i;
+        }
+        mOrderLength = itemCount;
+        mSize = itemCount;
+    }
+
+    @Override
+    public void invert(int itemCount) {
+        if (itemCount <= 0)
+            return;
+
+        ensureWords(itemCount);
+        final int fullWords = itemCount >>> ADDRESS_BITS;
+        for (int i = 0; i < fullWords; i++) {
+            mWords[i] = ~mWords[i];
+        }
+        final int rest = itemCount & 63;
+        if (rest != 0) {
+            mWords[fullWords] ^= (1L << rest) - 1;
+        }
+
+        // 范围外原本选中的位置保持原有顺序，范围内新选中的位置按升序追加
+        int size = 0;
+        for (int i = 0; i < mOrderLength; i++) {
+            final int position = mOrder[i];
+            if (position >= itemCount) { //空位小于0，一起被移除
+                mSlots[position] = size;
+                mOrder[size++] = position;
+            }
+        }
+        mOrderLength = size;
+        mSize = size;
+        final int words = ((itemCount - 1) >>> ADDRESS_BITS) + 1;
+        for (int w = 0; w < words; w++) {
+            long word = mWords[w];
+            while (word != 0) {
+                final int position = (w << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+                if (position >= itemCount)
+                    break;
+
+                appendOrder(position);
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public int[] toArray() {
+        compactOrder();
+        return Arrays.copyOf(mOrder, mSize);
+    }
+
+    /**
+     * 第w个word中位于[start, end)范围内的位
+     */
+    private static long rangeMask(int w, int start, int end) {
+        final int wordStart = w << ADDRESS_BITS;
+        long mask = -1L;
+        if (start > wordStart) {
+            mask &= -1L << (start - wordStart);
+        }
+        if (end < wordStart + 64) {
+            mask &= (1L << (end - wordStart)) - 1;
+        }
+        return mask;
+    }
+
+    private void appendOrder(int position) {
+        if (mOrderLength == mOrder.length && mOrderLength - mSize >= mSize) { //空位不少于一半时压缩而不是扩容
+            compactOrder();
+        }
+        ensureOrder(mOrderLength + 1);
+        ensureSlots(position + 1);
+        mSlots[position] = mOrderLength;
+        mOrder[mOrderLength++] = position;
+        mSize++;
+    }
+
+    private void removeOrder(int position) {
+        final int slot = mSlots[position];
+        mOrder[slot] = REMOVED;
+        mSize--;
+        if (slot == mOrderLength - 1) { //最近选中的位置在末尾，直接缩短
+            mOrderLength--;
+        }
+        if (mSize == 0) {
+            mOrderLength = 0;
+        }
+    }
+
+    /**
+     * 移除顺序数组中的空位并更新下标
+     */
+    private void compactOrder() {
+        if (mOrderLength == mSize)
+            return;
+
+        int size = 0;
+        for (int i = 0; i < mOrderLength; i++) {
+            final int position = mOrder[i];
+            if (position != REMOVED) {
+                mSlots[position] = size;
+                mOrder[size++] = position;
+            }
+        }
+        mOrderLength = size;
+    }
+
+    private void ensureWords(int bitCount) {
+        final int required = ((bitCount - 1) >>> ADDRESS_BITS) + 1;
+        if (required > mWords.length) {
+            mWords = Arrays.copyOf(mWords, Math.max(required, mWords.length * 2));
+        }
+    }
+
+    private void ensureOrder(int capacity) {
+        if (capacity > mOrder.length) {
+            mOrder = Arrays.copyOf(mOrder, Math.max(capacity, mOrder.length * 2));
+        }
+    }
+
+    private void ensureSlots(int capacity) {
+        if (capacity > mSlots.length) {
+            mSlots = Arrays.copyOf(mSlots, Math.max(capacity, mSlots.length * 2));
+        }
+    }
+}
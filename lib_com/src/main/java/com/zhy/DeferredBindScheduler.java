@@ -0,0 +1,111 @@
+package com.zhy;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayDeque;
+
+/**
+ * 延迟绑定调度，在主线程空闲时按绑定顺序执行{@link RecyclerEasyAdapter#whenBindViewHolderDeferred}，
+ * 列表惯性滑动期间暂停，滑动停止后继续
+ */
+final class DeferredBindScheduler<VH extends RecyclerView.ViewHolder> extends RecyclerView.OnScrollListener implements MessageQueue.IdleHandler {
+    /**
+     * 每次空闲最多占用的时间，超过后等待下一次空闲
+     */
+    private static final long IDLE_BUDGET_MS = 4;
+
+    private final RecyclerEasyAdapter<VH> mAdapter;
+    private final ArrayDeque<VH> mPending = new ArrayDeque<>();
+    private RecyclerView mRecyclerView;
+    private boolean mIdleHandlerAdded;
+
+    DeferredBindScheduler(RecyclerEasyAdapter<VH> adapter) {
+        mAdapter = adapter;
+    }
+
+    void attach(RecyclerView recyclerView) {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(this);
+        }
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(this);
+    }
+
+    void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(this);
+        if (mRecyclerView == recyclerView) {
+            mRecyclerView = null;
+            mPending.clear();
+        }
+    }
+
+    /**
+     * 完整绑定后调用，同一个ViewHolder重新绑定时替换原来的任务
+     */
+    void schedule(VH holder) {
+        mPending.remove(holder);
+        mPending.addLast(holder);
+        ensureIdleHandler();
+    }
+
+    /**
+     * ViewHolder回收时调用，取消未执行的延迟绑定
+     */
+    void cancel(VH holder) {
+        mPending.remove(holder);
+    }
+
+    void release() {
+        mPending.clear();
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(this);
+            mRecyclerView = null;
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState != RecyclerView.SCROLL_STATE_SETTLING) {
+            ensureIdleHandler();
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (isFlinging()) { //惯性滑动期间暂停，滑动状态变化时重新注册
+            mIdleHandlerAdded = false;
+            return false;
+        }
+
+        final long deadline = SystemClock.uptimeMillis() + IDLE_BUDGET_MS;
+        while (!mPending.isEmpty() && SystemClock.uptimeMillis() < deadline) {
+            final VH holder = mPending.pollFirst();
+            final int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mAdapter.whenBindViewHolderDeferred(holder, position);
+            }
+        }
+
+        if (mPending.isEmpty()) {
+            mIdleHandlerAdded = false;
+            return false;
+        }
+        return true;
+    }
+
+    private void ensureIdleHandler() {
+        if (mIdleHandlerAdded || mPending.isEmpty() || isFlinging())
+            return;
+
+        mIdleHandlerAdded = true;
+        Looper.myQueue().addIdleHandler(this);
+    }
+
+    private boolean isFlinging() {
+        return mRecyclerView != null && mRecyclerView.getScrollState() == RecyclerView.SCROLL_STATE_SETTLING;
+    }
+}
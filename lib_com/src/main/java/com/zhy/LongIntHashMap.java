@@ -0,0 +1,178 @@
+package com.zhy;
+
+import java.util.Arrays;
+
+/**
+ * long到int的开放寻址哈希表，key和value均为基本类型，不会产生装箱
+ */
+public class LongIntHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private boolean[] mUsed;
+    private int mSize;
+    private int mThreshold;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) (Math.max(expectedSize, 4) / LOAD_FACTOR)));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 获取key对应的value
+     *
+     * @param key
+     * @param defaultValue key不存在时返回的值
+     * @return
+     */
+    public int get(long key, int defaultValue) {
+        final int index = indexOf(key);
+        return index >= 0 ? mValues[index] : defaultValue;
+    }
+
+    /**
+     * 存入key和value
+     *
+     * @param key
+     * @param value
+     * @return key原本不存在返回true
+     */
+    public boolean put(long key, int value) {
+        final int mask = mKeys.length - 1;
+        int index = hash(key) & mask;
+        while (mUsed[index]) {
+            if (mKeys[index] == key) {
+                mValues[index] = value;
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        mUsed[index] = true;
+        mKeys[index] = key;
+        mValues[index] = value;
+        if (++mSize > mThreshold) {
+            rehash(mKeys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * 移除key
+     *
+     * @param key
+     * @return key原本存在返回true
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0)
+            return false;
+
+        // 线性探测的向后移位删除，保证后续key仍可被查找到
+        final int mask = mKeys.length - 1;
+        int next = (index + 1) & mask;
+        while (mUsed[next]) {
+            final int ideal = hash(mKeys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                mKeys[index] = mKeys[next];
+                mValues[index] = mValues[next];
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mUsed[index] = false;
+        mSize--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(mUsed, false);
+        mSize = 0;
+    }
+
+    /**
+     * 哈希表容量，配合{@link #isSlotUsed(int)}等方法遍历
+     *
+     * @return
+     */
+    public int capacity() {
+        return mKeys.length;
+    }
+
+    public boolean isSlotUsed(int slot) {
+        return mUsed[slot];
+    }
+
+    public long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return mValues[slot];
+    }
+
+    public void setValueAt(int slot, int value) {
+        mValues[slot] = value;
+    }
+
+    private int indexOf(long key) {
+        final int mask = mKeys.length - 1;
+        int index = hash(key) & mask;
+        while (mUsed[index]) {
+            if (mKeys[index] == key)
+                return index;
+
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        final long[] keys = mKeys;
+        final int[] values = mValues;
+        final boolean[] used = mUsed;
+        allocate(capacity);
+        mSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mUsed = new boolean[capacity];
+        mThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
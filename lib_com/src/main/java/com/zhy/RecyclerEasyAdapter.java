@@ -1,11 +1,15 @@
 package com.zhy;
 
+import android.os.Bundle;
 import android.view.View;
+import android.view.ViewGroup;
 
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * 支持监听item单击事件以及支持单选模式、多选模式
@@ -37,18 +41,148 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
 
     public abstract void whenBindViewHolder(VH holder, int position);
 
+    private static final int RANGE_SELECT = 0;
+    private static final int RANGE_DESELECT = 1;
+    private static final int RANGE_TOGGLE = 2;
+
+    private static final String STATE_SELECT_MODE = "com.zhy.RecyclerEasyAdapter.selectMode";
+    private static final String STATE_SINGLE_SELECTED = "com.zhy.RecyclerEasyAdapter.singleSelected";
+    private static final String STATE_MAX_SELECTED_COUNT = "com.zhy.RecyclerEasyAdapter.maxSelectedCount";
+    private static final String STATE_MULTI_SELECTED = "com.zhy.RecyclerEasyAdapter.multiSelected";
+
     private int singleSelected = 0; // 默认为第一个被选中
-    private List<Integer> multiSelected = new ArrayList<>();
+    private SelectionStore multiSelected = new BitSetSelectionStore();
     private int maxSelectedCount = -1;
+    private boolean selectionDiffEnabled;
+    private boolean bindListenerOnCreate;
+    private long singleSelectedId = RecyclerView.NO_ID;
+    private StableIdObserver stableIdObserver;
+    private RecyclerView.RecycledViewPool sharedViewPool;
+    private DeferredBindScheduler<VH> deferredBindScheduler;
+    private AdapterMetrics metrics;
+    private View prewarmedItemView;
+    private int prewarmedViewType;
 
     @Override
     public void onBindViewHolder(VH holder, int position) {
-        whenBindViewHolder(holder, position);
+        final AdapterMetrics metrics = this.metrics;
+        if (metrics == null) {
+            whenBindViewHolder(holder, position);
+        } else {
+            final int viewType = holder.getItemViewType();
+            final long start = metrics.beginBind(viewType);
+            whenBindViewHolder(holder, position);
+            metrics.endBind(viewType, start);
+        }
+
+        if (!bindListenerOnCreate) {
+            holder.itemView.setTag(position);
+            holder.itemView.setOnClickListener(this);
+            holder.itemView.setOnLongClickListener(this);
+        } else if (!holder.itemView.hasOnClickListeners()) { //没有绑定监听时点击会失效
+            throw new IllegalStateException("bindListenerOnCreate requires dispatchViewHolderCreated() in onCreateViewHolder()");
+        }
+
+        bindSelectedState(holder, position);
+
+        if (deferredBindScheduler != null) {
+            deferredBindScheduler.schedule(holder);
+        }
+    }
+
+    /**
+     * 延迟绑定模式下，完整绑定后在主线程空闲时回调，惯性滑动期间暂停到滑动停止，
+     * 适合格式化文本、加载图片等耗时操作，{@link #whenBindViewHolder}中只做必要的绑定。
+     * ViewHolder在回调前被回收会自动取消
+     *
+     * @param holder
+     * @param position
+     */
+    protected void whenBindViewHolderDeferred(VH holder, int position) {
+    }
+
+    @Override
+    public void onViewRecycled(VH holder) {
+        super.onViewRecycled(holder);
+        if (deferredBindScheduler != null) {
+            deferredBindScheduler.cancel(holder);
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (sharedViewPool != null) {
+            recyclerView.setRecycledViewPool(sharedViewPool);
+            onApplySharedViewPool(sharedViewPool);
+        }
+        if (deferredBindScheduler != null) {
+            deferredBindScheduler.attach(recyclerView);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if (deferredBindScheduler != null) {
+            deferredBindScheduler.detach(recyclerView);
+        }
+    }
 
-        holder.itemView.setTag(position);
-        holder.itemView.setOnClickListener(this);
-        holder.itemView.setOnLongClickListener(this);
+    /**
+     * 共用缓存池设置到RecyclerView后回调，子类可以在这里设置每种viewType的最大缓存数量
+     *
+     * @param pool
+     */
+    protected void onApplySharedViewPool(RecyclerView.RecycledViewPool pool) {
+    }
 
+    /**
+     * ViewHolder创建完成后调用，子类需要在{@link #onCreateViewHolder}返回前调用，
+     * 创建时绑定监听模式下会在这里一次性绑定点击和长按监听
+     *
+     * @param holder
+     */
+    protected final void dispatchViewHolderCreated(VH holder) {
+        if (bindListenerOnCreate) {
+            final ItemListener listener = new ItemListener(holder);
+            holder.itemView.setOnClickListener(listener);
+            holder.itemView.setOnLongClickListener(listener);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(VH holder, int position, List<Object> payloads) {
+        if (selectionDiffEnabled && isSelectionPayloads(payloads)) { //只有选中状态变化，不需要完整绑定
+            bindSelectedState(holder, position);
+            whenBindSelectedState(holder, position, isSelected(position));
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    /**
+     * 选中差量刷新模式下，item只有选中状态变化时回调，此时不会回调{@link #whenBindViewHolder}
+     *
+     * @param holder
+     * @param position
+     * @param isSelected 是否选中
+     */
+    protected void whenBindSelectedState(VH holder, int position, boolean isSelected) {
+    }
+
+    private static boolean isSelectionPayloads(List<Object> payloads) {
+        if (payloads.isEmpty())
+            return false;
+
+        for (int i = 0; i < payloads.size(); i++) {
+            if (!(payloads.get(i) instanceof SelectionPayload))
+                return false;
+        }
+        return true;
+    }
+
+    private void bindSelectedState(VH holder, int position) {
         if (selectMode == SelectMode.CLICK) { //点击
             holder.itemView.setSelected(false);
         } else if (selectMode == SelectMode.SINGLE_SELECT) { //单选
@@ -68,7 +202,15 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
 
     @Override
     public boolean onLongClick(View v) {
-        int itemPosition = (int) v.getTag();
+        return performItemLongClick((int) v.getTag());
+    }
+
+    @Override
+    public void onClick(View v) {
+        performItemClick((int) v.getTag());
+    }
+
+    private boolean performItemLongClick(int itemPosition) {
         if (selectMode == SelectMode.CLICK) {//长按模式
             if (onItemLongClickListener != null) {
                 onItemLongClickListener.onClickedLong(itemPosition);
@@ -77,29 +219,28 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
         return false;
     }
 
-
-    @Override
-    public void onClick(View v) {
-        int itemPosition = (int) v.getTag();
+    private void performItemClick(int itemPosition) {
         if (selectMode == SelectMode.CLICK) {//点击模式
             if (onItemClickListener != null) {
                 onItemClickListener.onClicked(itemPosition);
             }
         } else if (selectMode == SelectMode.SINGLE_SELECT) { //单选模式
+            final int oldSelected = singleSelected;
             if (onItemSingleSelectListener != null) {
                 if (singleSelected == itemPosition) {
                     onItemSingleSelectListener.onSelected(itemPosition, false);
                 } else {
                     singleSelected = itemPosition;
+                    rememberSingleSelectedId();
                     onItemSingleSelectListener.onSelected(itemPosition, true);
                 }
             }
-            notifyDataSetChanged();//通知刷新
+            notifySingleSelectionChanged(oldSelected, singleSelected);//通知刷新
         } else if (selectMode == SelectMode.MULTI_SELECT) {//多选模式
             if (maxSelectedCount <= 0  //选择不受限制
                     || multiSelected.size() < maxSelectedCount) {  // 选择个数需要小于最大可选数
                 if (multiSelected.contains(itemPosition)) {
-                    multiSelected.remove((Integer) itemPosition);
+                    multiSelected.remove(itemPosition);
                     if (onItemMultiSelectListener != null) {
                         onItemMultiSelectListener.onSelected(Operation.ORDINARY, itemPosition, false);
                     }
@@ -111,11 +252,49 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
                 }
 
             } else if (multiSelected.size() == maxSelectedCount && multiSelected.contains(itemPosition)) { //当等于最大数量并且点击的item包含在已选中 可清除
-                multiSelected.remove((Integer) itemPosition);
+                multiSelected.remove(itemPosition);
                 if (onItemMultiSelectListener != null) {
                     onItemMultiSelectListener.onSelected(Operation.ORDINARY, itemPosition, false);
                 }
             }
+            notifySelectionChanged(itemPosition);
+        }
+    }
+
+    /**
+     * 通知某个item选中状态变化，选中差量刷新模式下只刷新该item
+     */
+    private void notifySelectionChanged(int position) {
+        if (selectionDiffEnabled) {
+            if (position >= 0 && position < getItemCount()) {
+                notifyItemChanged(position, SelectionPayload.SELECTION_CHANGED);
+            }
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * 通知单选项变化，选中差量刷新模式下只刷新原选中项和新选中项
+     */
+    private void notifySingleSelectionChanged(int oldSelected, int newSelected) {
+        if (selectionDiffEnabled) {
+            notifySelectionChanged(oldSelected);
+            if (newSelected != oldSelected) {
+                notifySelectionChanged(newSelected);
+            }
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * 通知全部item选中状态变化，选中差量刷新模式下只会局部绑定选中状态
+     */
+    private void notifySelectionChangedAll() {
+        if (selectionDiffEnabled) {
+            notifyItemRangeChanged(0, getItemCount(), SelectionPayload.SELECTION_CHANGED);
+        } else {
             notifyDataSetChanged();
         }
     }
@@ -130,7 +309,7 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
 
     public void setSelectMode(SelectMode selectMode) {
         this.selectMode = selectMode;
-        notifyDataSetChanged();
+        notifySelectionChangedAll();
     }
 
     /**
@@ -151,10 +330,13 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
     public void setSelected(int... itemPositions) {
         multiSelected.clear();
         if (selectMode == SelectMode.SINGLE_SELECT) {
+            final int oldSelected = singleSelected;
             singleSelected = itemPositions[0];
+            rememberSingleSelectedId();
             if (onItemSingleSelectListener != null) {
                 onItemSingleSelectListener.onSelected(singleSelected, true);
             }
+            notifySingleSelectionChanged(oldSelected, singleSelected);
         } else {
             for (int itemPosition : itemPositions) {
                 multiSelected.add(itemPosition);
@@ -162,8 +344,8 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
                     onItemMultiSelectListener.onSelected(Operation.ORDINARY, itemPosition, true);
                 }
             }
+            notifySelectionChangedAll();
         }
-        notifyDataSetChanged();
     }
 
     /***
@@ -174,14 +356,14 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
         if (maxSelectedCount <= 0  //选择不受限制
                 || multiSelected.size() < maxSelectedCount) {  // 选择个数需要小于最大可选数
             if (multiSelected.contains(itemPosition)) {
-                multiSelected.remove((Integer) itemPosition);
+                multiSelected.remove(itemPosition);
                 if (onItemMultiSelectListener != null) {
                     onItemMultiSelectListener.onSelected(Operation.ORDINARY, itemPosition, false);
                 }
             }
         }
 
-        notifyDataSetChanged();
+        notifySelectionChanged(itemPosition);
     }
 
     /**
@@ -195,6 +377,7 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
 
     public void setSingleSelected(int singleSelected) {
         this.singleSelected = singleSelected;
+        rememberSingleSelectedId();
     }
 
     /**
@@ -206,7 +389,7 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
             if (onItemMultiSelectListener != null) {
                 onItemMultiSelectListener.onSelected(Operation.ALL_CANCEL, -1, false);
             }
-            notifyDataSetChanged();
+            notifySelectionChangedAll();
         }
     }
 
@@ -221,6 +404,81 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
      * 获取多选项位置，元素顺序按照选择顺序排列
      */
     public List<Integer> getMultiSelectedPosition() {
+        final int[] positions = multiSelected.toArray();
+        final List<Integer> list = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            list.add(position);
+        }
+        return list;
+    }
+
+    /**
+     * 设置多选项存储，默认为{@link BitSetSelectionStore}，设置后原有选中项会被清除
+     *
+     * @param selectionStore
+     */
+    public void setSelectionStore(SelectionStore selectionStore) {
+        if (selectionStore == null)
+            throw new IllegalArgumentException("selectionStore is null");
+
+        selectionStore.clear();
+        if (multiSelected instanceof RecyclerView.AdapterDataObserver) {
+            unregisterAdapterDataObserver((RecyclerView.AdapterDataObserver) multiSelected);
+        }
+        if (selectionStore instanceof RecyclerView.AdapterDataObserver) {
+            registerAdapterDataObserver((RecyclerView.AdapterDataObserver) selectionStore);
+        }
+        this.multiSelected = selectionStore;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 设置是否以item稳定id保存选中项，需要先开启{@link #setHasStableIds(boolean)}。
+     * 开启后数据插入、删除、移动时通过notifyItemRangeXXX通知即可保持选中项不变，不需要重建选中项
+     *
+     * @param enabled
+     */
+    public void setStableIdSelectionEnabled(boolean enabled) {
+        if (enabled == (stableIdObserver != null))
+            return;
+
+        if (enabled) {
+            if (!hasStableIds())
+                throw new IllegalStateException("adapter has no stable ids");
+
+            stableIdObserver = new StableIdObserver();
+            registerAdapterDataObserver(stableIdObserver);
+            setSelectionStore(new StableIdSelectionStore(this));
+            rememberSingleSelectedId();
+        } else {
+            unregisterAdapterDataObserver(stableIdObserver);
+            stableIdObserver = null;
+            singleSelectedId = RecyclerView.NO_ID;
+            setSelectionStore(new BitSetSelectionStore());
+        }
+    }
+
+    public boolean isStableIdSelectionEnabled() {
+        return stableIdObserver != null;
+    }
+
+    private void rememberSingleSelectedId() {
+        if (stableIdObserver == null)
+            return;
+
+        if (singleSelected >= 0 && singleSelected < getItemCount()) {
+            singleSelectedId = getItemId(singleSelected);
+        } else {
+            singleSelectedId = RecyclerView.NO_ID;
+        }
+    }
+
+    /**
+     * 获取多选项存储
+     *
+     * @return
+     */
+    public SelectionStore getSelectionStore() {
         return multiSelected;
     }
 
@@ -237,7 +495,162 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
         if (onItemMultiSelectListener != null) {
             onItemMultiSelectListener.onSelected(Operation.SET_MAX_COUNT, -1, false);
         }
-        notifyDataSetChanged();
+        notifySelectionChangedAll();
+    }
+
+    /**
+     * 设置是否开启选中差量刷新，开启后选中状态变化只通知发生变化的item，
+     * 并通过{@link SelectionPayload}局部绑定，不会回调{@link #whenBindViewHolder}
+     *
+     * @param selectionDiffEnabled
+     */
+    public void setSelectionDiffEnabled(boolean selectionDiffEnabled) {
+        this.selectionDiffEnabled = selectionDiffEnabled;
+    }
+
+    public boolean isSelectionDiffEnabled() {
+        return selectionDiffEnabled;
+    }
+
+    /**
+     * 设置是否在创建ViewHolder时绑定点击监听，需要在ViewHolder创建前设置。
+     * 开启后绑定时不再设置tag和监听，点击位置通过{@link RecyclerView.ViewHolder#getAdapterPosition()}获取，
+     * 子类需要在{@link #onCreateViewHolder}中调用{@link #dispatchViewHolderCreated}，否则绑定时抛出IllegalStateException
+     *
+     * @param bindListenerOnCreate
+     */
+    public void setBindListenerOnCreate(boolean bindListenerOnCreate) {
+        this.bindListenerOnCreate = bindListenerOnCreate;
+    }
+
+    public boolean isBindListenerOnCreate() {
+        return bindListenerOnCreate;
+    }
+
+    /**
+     * 设置共用的ViewHolder缓存池，绑定到RecyclerView时生效，同一个页面的多个列表可以共用{@link SharedViewPool#of}
+     *
+     * @param pool
+     */
+    public void setSharedViewPool(RecyclerView.RecycledViewPool pool) {
+        this.sharedViewPool = pool;
+    }
+
+    public RecyclerView.RecycledViewPool getSharedViewPool() {
+        return sharedViewPool;
+    }
+
+    /**
+     * 在主线程空闲时提前创建ViewHolder放入缓存池
+     *
+     * @param recyclerView 真实的父布局
+     * @param viewType
+     * @param count        创建个数
+     */
+    public void prewarmViewHolders(RecyclerView recyclerView, int viewType, int count) {
+        ViewHolderPrewarmer.prewarm(recyclerView, this, viewType, count);
+    }
+
+    /**
+     * 在后台线程提前inflate布局，完成后在主线程创建ViewHolder放入缓存池，
+     * 需要子类实现{@link #onInflateItemView}，否则在主线程空闲时创建
+     *
+     * @param recyclerView 真实的父布局
+     * @param viewType
+     * @param count        创建个数
+     * @param executor     inflate布局的线程池
+     */
+    public void prewarmViewHolders(RecyclerView recyclerView, int viewType, int count, Executor executor) {
+        ViewHolderPrewarmer.prewarm(recyclerView, this, viewType, count, executor);
+    }
+
+    /**
+     * 在后台线程inflate itemView，用于后台预创建ViewHolder，不能访问adapter中只在主线程使用的状态。
+     * 实现后需要在{@link #onCreateViewHolder}中先通过{@link #pollPrewarmedItemView}获取已inflate的布局
+     *
+     * @param parent   与RecyclerView无关的父布局，只用于生成布局参数
+     * @param viewType
+     * @return 默认返回null，表示不支持后台inflate
+     */
+    protected View onInflateItemView(ViewGroup parent, int viewType) {
+        return null;
+    }
+
+    /**
+     * 获取后台预先inflate的itemView，在{@link #onCreateViewHolder}中调用
+     *
+     * @param viewType
+     * @return 不是在创建预创建的ViewHolder时返回null，此时需要自己inflate
+     */
+    protected final View pollPrewarmedItemView(int viewType) {
+        final View view = prewarmedItemView;
+        if (view == null || prewarmedViewType != viewType)
+            return null;
+
+        prewarmedItemView = null;
+        return view;
+    }
+
+    /**
+     * 在主线程用已inflate的itemView创建ViewHolder，子类没有获取该布局时仍然自己inflate
+     */
+    VH createPrewarmedViewHolder(RecyclerView recyclerView, int viewType, View itemView) {
+        prewarmedItemView = itemView;
+        prewarmedViewType = viewType;
+        try {
+            return createViewHolder(recyclerView, viewType);
+        } finally {
+            prewarmedItemView = null;
+        }
+    }
+
+    /**
+     * 设置是否开启延迟绑定，开启后完整绑定时会调度{@link #whenBindViewHolderDeferred}，
+     * 需要在设置给RecyclerView之前调用
+     *
+     * @param enabled
+     */
+    public void setDeferredBindEnabled(boolean enabled) {
+        if (enabled && deferredBindScheduler == null) {
+            deferredBindScheduler = new DeferredBindScheduler<>(this);
+        } else if (!enabled && deferredBindScheduler != null) {
+            deferredBindScheduler.release();
+            deferredBindScheduler = null;
+        }
+    }
+
+    public boolean isDeferredBindEnabled() {
+        return deferredBindScheduler != null;
+    }
+
+    /**
+     * 设置耗时统计，为null时关闭统计
+     *
+     * @param metrics
+     */
+    public void setMetrics(AdapterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public AdapterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置item内嵌套列表的预取数量，在{@link #whenBindViewHolder}中调用，
+     * 外层列表预取该item时会同时创建并绑定嵌套列表的前count个item，只对LinearLayoutManager有效
+     *
+     * @param nestedRecyclerView item内的嵌套列表
+     * @param count              通常为嵌套列表首屏可见的item数
+     */
+    protected static void setNestedPrefetchItemCount(RecyclerView nestedRecyclerView, int count) {
+        final RecyclerView.LayoutManager layoutManager = nestedRecyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            final LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+            if (linearLayoutManager.getInitialPrefetchItemCount() != count) {
+                linearLayoutManager.setInitialPrefetchItemCount(count);
+            }
+        }
     }
 
     /**
@@ -249,19 +662,60 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
         return maxSelectedCount;
     }
 
+    /**
+     * 保存选择模式、单选项、最大可选数和多选项，多选项按游程或位图压缩保存，
+     * 在Activity或Fragment的onSaveInstanceState中调用
+     *
+     * @param outState
+     */
+    public void onSaveInstanceState(Bundle outState) {
+        if (selectMode != null) {
+            outState.putString(STATE_SELECT_MODE, selectMode.name());
+        }
+        outState.putInt(STATE_SINGLE_SELECTED, singleSelected);
+        outState.putInt(STATE_MAX_SELECTED_COUNT, maxSelectedCount);
+        SelectionCodec.save(outState, STATE_MULTI_SELECTED, multiSelected.toArray());
+    }
+
+    /**
+     * 恢复{@link #onSaveInstanceState(Bundle)}保存的选择状态，不会回调选择监听，只刷新一次。
+     * 选中项超过{@link SelectionCodec#ORDER_LIMIT}个时恢复后的选择顺序为位置升序。
+     * 使用稳定id存储选中项时需要在设置数据之后调用
+     *
+     * @param savedState 为null时不做处理
+     */
+    public void onRestoreInstanceState(Bundle savedState) {
+        if (savedState == null)
+            return;
+
+        final String mode = savedState.getString(STATE_SELECT_MODE);
+        if (mode != null) {
+            selectMode = SelectMode.valueOf(mode);
+        }
+        singleSelected = savedState.getInt(STATE_SINGLE_SELECTED, singleSelected);
+        rememberSingleSelectedId();
+        maxSelectedCount = savedState.getInt(STATE_MAX_SELECTED_COUNT, maxSelectedCount);
+
+        final int[] positions = SelectionCodec.restore(savedState, STATE_MULTI_SELECTED);
+        if (positions != null) {
+            multiSelected.clear();
+            for (int position : positions) {
+                multiSelected.add(position);
+            }
+        }
+        notifyDataSetChanged();
+    }
+
     /**
      * 选择全部，仅在maxSelectedCount <= 0 不限制选择数时有效
      */
     public void selectAll() {
         if (maxSelectedCount <= 0) {
-            multiSelected.clear();
-            for (int i = 0; i < getItemCount(); i++) {
-                multiSelected.add(i);
-            }
+            multiSelected.selectAll(getItemCount());
             if (onItemMultiSelectListener != null) {
                 onItemMultiSelectListener.onSelected(Operation.ALL_SELECTED, -1, false);
             }
-            notifyDataSetChanged();
+            notifySelectionChangedAll();
         }
     }
 
@@ -274,15 +728,96 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
             if (onItemMultiSelectListener != null) {
                 onItemMultiSelectListener.onSelected(Operation.REVERSE_SELECTED, -1, false);
             }
-            for (int i = 0; i < getItemCount(); i++) {
-                if (multiSelected.contains(i)) {
-                    multiSelected.remove((Integer) i);
-                } else {
-                    multiSelected.add(i);
+            multiSelected.invert(getItemCount());
+            notifySelectionChangedAll();
+        }
+    }
+
+    /**
+     * 批量选中[positionStart, positionStart + itemCount)，超出最大可选数的部分会被截断，
+     * 整个操作只回调一次{@link OnItemBatchSelectListener#onBatchSelected}并刷新一次，
+     * 设置的多选监听需要实现{@link OnItemBatchSelectListener}，否则抛出IllegalStateException
+     *
+     * @param positionStart 起始位置
+     * @param itemCount     条数
+     */
+    public void selectRange(int positionStart, int itemCount) {
+        applyRange(positionStart, itemCount, RANGE_SELECT);
+    }
+
+    /**
+     * 批量取消选中[positionStart, positionStart + itemCount)，
+     * 整个操作只回调一次{@link OnItemBatchSelectListener#onBatchSelected}并刷新一次，
+     * 设置的多选监听需要实现{@link OnItemBatchSelectListener}，否则抛出IllegalStateException
+     *
+     * @param positionStart 起始位置
+     * @param itemCount     条数
+     */
+    public void deselectRange(int positionStart, int itemCount) {
+        applyRange(positionStart, itemCount, RANGE_DESELECT);
+    }
+
+    /**
+     * 批量反选[positionStart, positionStart + itemCount)，先取消范围内已选中的item，
+     * 再按位置升序选中原本未选中的item，超出最大可选数的选中会被忽略，
+     * 整个操作只回调一次{@link OnItemBatchSelectListener#onBatchSelected}并刷新一次，
+     * 设置的多选监听需要实现{@link OnItemBatchSelectListener}，否则抛出IllegalStateException
+     *
+     * @param positionStart 起始位置
+     * @param itemCount     条数
+     */
+    public void toggleRange(int positionStart, int itemCount) {
+        applyRange(positionStart, itemCount, RANGE_TOGGLE);
+    }
+
+    private void applyRange(int positionStart, int itemCount, int action) {
+        final int start = Math.max(positionStart, 0);
+        final int end = Math.min(positionStart + itemCount, getItemCount());
+        if (onItemMultiSelectListener != null && !(onItemMultiSelectListener instanceof OnItemBatchSelectListener))
+            throw new IllegalStateException("range selection requires OnItemBatchSelectListener");
+
+        if (start >= end)
+            return;
+
+        int first = -1;
+        int last = -1;
+        int added = 0;
+        int removed = 0;
+        if (action == RANGE_SELECT) {
+            for (int i = start; i < end; i++) {
+                if (multiSelected.contains(i))
+                    continue;
+                if (maxSelectedCount > 0 && multiSelected.size() >= maxSelectedCount) //已达到最大可选数
+                    break;
+
+                multiSelected.add(i);
+                added++;
+                if (first < 0) {
+                    first = i;
                 }
+                last = i;
+            }
+        } else {
+            // 选中项存储批量取消和反选，通知的范围内可能有未变化的item
+            final int sizeBefore = multiSelected.size();
+            added = action == RANGE_DESELECT ? 0 : multiSelected.toggleRange(start, end - start, maxSelectedCount);
+            removed = action == RANGE_DESELECT
+                    ? multiSelected.removeRange(start, end - start)
+                    : sizeBefore + added - multiSelected.size();
+            if (added > 0 || removed > 0) {
+                first = start;
+                last = end - 1;
             }
-            notifyDataSetChanged();
         }
+
+        if (first < 0)
+            return;
+
+        final int changedCount = last - first + 1;
+        if (onItemMultiSelectListener != null) {
+            ((OnItemBatchSelectListener) onItemMultiSelectListener).onBatchSelected(first, changedCount, added, removed);
+        }
+        notifyItemRangeChanged(first, changedCount, SelectionPayload.SELECTION_CHANGED);
     }
 
     /**
@@ -300,6 +835,86 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
         return false;
     }
 
+    /**
+     * 创建ViewHolder时绑定的监听，通过holder获取当前位置
+     */
+    private final class ItemListener implements View.OnClickListener, View.OnLongClickListener {
+        private final VH holder;
+
+        ItemListener(VH holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        public void onClick(View v) {
+            final int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                performItemClick(position);
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            final int position = holder.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                return performItemLongClick(position);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 稳定id选中模式下根据数据变化范围重新映射单选项位置
+     */
+    private final class StableIdObserver extends RecyclerView.AdapterDataObserver {
+        @Override
+        public void onChanged() {
+            if (singleSelectedId == RecyclerView.NO_ID) {
+                rememberSingleSelectedId();
+                return;
+            }
+
+            final int itemCount = getItemCount();
+            for (int i = 0; i < itemCount; i++) {
+                if (getItemId(i) == singleSelectedId) {
+                    singleSelected = i;
+                    return;
+                }
+            }
+            singleSelected = RecyclerView.NO_POSITION;
+            singleSelectedId = RecyclerView.NO_ID;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (singleSelectedId == RecyclerView.NO_ID) {
+                rememberSingleSelectedId();
+            } else if (singleSelected >= positionStart) {
+                singleSelected += itemCount;
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (singleSelectedId == RecyclerView.NO_ID)
+                return;
+
+            if (singleSelected >= positionStart + itemCount) {
+                singleSelected -= itemCount;
+            } else if (singleSelected >= positionStart) {
+                singleSelected = RecyclerView.NO_POSITION;
+                singleSelectedId = RecyclerView.NO_ID;
+            }
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (singleSelectedId != RecyclerView.NO_ID) {
+                singleSelected = StableIdSelectionStore.movePosition(singleSelected, fromPosition, toPosition, itemCount);
+            }
+        }
+    }
+
     /**
      * 点选模式监听接口
      */
@@ -353,6 +968,23 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
 
     }
 
+    /**
+     * 多选模式批量操作监听接口，使用selectRange、deselectRange或toggleRange时多选监听需要实现该接口，
+     * 批量操作只回调{@link #onBatchSelected}，不会回调{@link #onSelected}
+     */
+    public interface OnItemBatchSelectListener extends OnItemMultiSelectListener {
+        /**
+         * 批量选中、取消选中或者反选时回调，一次批量操作只回调一次，没有item变化时不回调。
+         * 反选时范围内可能同时有item被选中和取消选中，需要具体状态时通过{@link RecyclerEasyAdapter#isSelected(int)}判断
+         *
+         * @param positionStart   选中状态发生变化的起始位置
+         * @param itemCount       变化范围的条数，范围内可能有未变化的item
+         * @param selectedCount   新选中的条数
+         * @param deselectedCount 取消选中的条数
+         */
+        void onBatchSelected(int positionStart, int itemCount, int selectedCount, int deselectedCount);
+    }
+
     /**
      * 选择模式，分为点击，单选，多选。
      */
@@ -366,4 +998,11 @@ public abstract class RecyclerEasyAdapter<VH extends RecyclerView.ViewHolder> ex
     public enum Operation {
         ORDINARY, ALL_SELECTED, REVERSE_SELECTED, ALL_CANCEL, SET_MAX_COUNT
     }
+
+    /**
+     * 选中差量刷新时使用的payload，表示item只有选中状态发生变化
+     */
+    public enum SelectionPayload {
+        SELECTION_CHANGED
+    }
 }
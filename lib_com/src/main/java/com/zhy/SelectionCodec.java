@@ -0,0 +1,140 @@
+package com.zhy;
+
+import android.os.Bundle;
+
+import java.util.Arrays;
+
+/**
+ * 选中位置的紧凑编码，用于保存到{@link Bundle}。
+ * 选中数较少时直接保存位置以保留选择顺序，否则按游程和位图中较小的一种保存，恢复后按位置升序排列
+ */
+final class SelectionCodec {
+    /**
+     * 选中数不超过该值时保存选择顺序
+     */
+    static final int ORDER_LIMIT = 1024;
+
+    private static final String KEY_ORDER = ".order";
+    private static final String KEY_RUNS = ".runs";
+    private static final String KEY_WORDS = ".words";
+
+    private SelectionCodec() {
+    }
+
+    /**
+     * 保存选中位置
+     *
+     * @param out
+     * @param key
+     * @param positions 选中位置，按选择顺序排列
+     */
+    static void save(Bundle out, String key, int[] positions) {
+        if (positions.length <= ORDER_LIMIT) {
+            out.putIntArray(key + KEY_ORDER, positions);
+            return;
+        }
+
+        final int[] sorted = positions.clone();
+        Arrays.sort(sorted);
+        int runs = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[i - 1] + 1) {
+                runs++;
+            }
+        }
+
+        final int words = (sorted[sorted.length - 1] >>> 6) + 1;
+        if (runs <= words) { //每段游程占两个int，与一个long大小相同
+            out.putIntArray(key + KEY_RUNS, encodeRuns(sorted, runs));
+        } else {
+            out.putLongArray(key + KEY_WORDS, encodeWords(sorted, words));
+        }
+    }
+
+    /**
+     * 恢复选中位置
+     *
+     * @param in
+     * @param key
+     * @return 未保存时返回null
+     */
+    static int[] restore(Bundle in, String key) {
+        final int[] order = in.getIntArray(key + KEY_ORDER);
+        if (order != null)
+            return order;
+
+        final int[] runs = in.getIntArray(key + KEY_RUNS);
+        if (runs != null)
+            return decodeRuns(runs);
+
+        final long[] words = in.getLongArray(key + KEY_WORDS);
+        if (words != null)
+            return decodeWords(words);
+
+        return null;
+    }
+
+    /**
+     * 游程编码，依次为每段的起始位置和长度
+     */
+    private static int[] encodeRuns(int[] sorted, int runs) {
+        final int[] result = new int[runs * 2];
+        int run = 0;
+        result[0] = sorted[0];
+        result[1] = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1] + 1) {
+                result[run * 2 + 1]++;
+            } else {
+                run++;
+                result[run * 2] = sorted[i];
+                result[run * 2 + 1] = 1;
+            }
+        }
+        return result;
+    }
+
+    private static int[] decodeRuns(int[] runs) {
+        int count = 0;
+        for (int i = 1; i < runs.length; i += 2) {
+            count += runs[i];
+        }
+
+        final int[] positions = new int[count];
+        int size = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            final int start = runs[i];
+            final int end = start + runs[i + 1];
+            for (int position = start; position < end; position++) {
+                positions[size++] = position;
+            }
+        }
+        return positions;
+    }
+
+    private static long[] encodeWords(int[] sorted, int words) {
+        final long[] result = new long[words];
+        for (int position : sorted) {
+            result[position >>> 6] |= 1L << position;
+        }
+        return result;
+    }
+
+    private static int[] decodeWords(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        final int[] positions = new int[count];
+        int size = 0;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                positions[size++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+}
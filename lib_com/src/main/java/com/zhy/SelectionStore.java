@@ -0,0 +1,84 @@
+package com.zhy;
+
+/**
+ * 多选模式下的选中项存储，位置均为adapter位置
+ */
+public interface SelectionStore {
+
+    /**
+     * 判断某个位置是否被选中
+     *
+     * @param position
+     * @return
+     */
+    boolean contains(int position);
+
+    /**
+     * 选中某个位置
+     *
+     * @param position
+     * @return 原本未选中返回true
+     */
+    boolean add(int position);
+
+    /**
+     * 取消选中某个位置
+     *
+     * @param position
+     * @return 原本已选中返回true
+     */
+    boolean remove(int position);
+
+    /**
+     * 取消选中[positionStart, positionStart + itemCount)范围内的全部位置
+     *
+     * @param positionStart
+     * @param itemCount
+     * @return 取消选中的个数
+     */
+    int removeRange(int positionStart, int itemCount);
+
+    /**
+     * 反选[positionStart, positionStart + itemCount)范围内的全部位置，
+     * 先取消范围内已选中的位置，再按位置升序选中原本未选中的位置，选中个数达到maxSize后不再选中
+     *
+     * @param positionStart
+     * @param itemCount
+     * @param maxSize       最大选中个数，小于等于0表示不限制
+     * @return 新选中的个数
+     */
+    int toggleRange(int positionStart, int itemCount, int maxSize);
+
+    /**
+     * 清除全部选中项
+     */
+    void clear();
+
+    /**
+     * 选中项个数
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * 选中[0, itemCount)全部位置，选择顺序按照位置升序
+     *
+     * @param itemCount
+     */
+    void selectAll(int itemCount);
+
+    /**
+     * 反选[0, itemCount)全部位置，新选中的位置按照升序追加
+     *
+     * @param itemCount
+     */
+    void invert(int itemCount);
+
+    /**
+     * 获取选中项位置，元素顺序按照选择顺序排列
+     *
+     * @return
+     */
+    int[] toArray();
+}
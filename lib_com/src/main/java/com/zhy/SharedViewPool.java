@@ -0,0 +1,92 @@
+package com.zhy;
+
+import android.util.SparseIntArray;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 同一个页面多个列表共用的RecycledViewPool，记录每种viewType的最大缓存数量。
+ * 共用时不同adapter的viewType需要全局唯一，例如使用布局id作为viewType
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool {
+    /**
+     * RecycledViewPool每种viewType的默认最大缓存数量
+     */
+    public static final int DEFAULT_MAX_SCRAP = 5;
+
+    /**
+     * 缓存的ViewHolder强引用页面，不能用弱引用的key，页面销毁时移除
+     */
+    private static final Map<LifecycleOwner, SharedViewPool> POOLS = new HashMap<>();
+
+    private final SparseIntArray mMaxScrap = new SparseIntArray();
+
+    /**
+     * 获取页面共用的缓存池，页面销毁时清空并移除，需要在主线程调用
+     *
+     * @param owner 页面，例如Activity或Fragment
+     * @return 页面已销毁时返回不共用的新缓存池
+     */
+    public static SharedViewPool of(final LifecycleOwner owner) {
+        final Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED)
+            return new SharedViewPool();
+
+        synchronized (POOLS) {
+            SharedViewPool pool = POOLS.get(owner);
+            if (pool == null) {
+                pool = new SharedViewPool();
+                POOLS.put(owner, pool);
+                lifecycle.addObserver(new LifecycleObserver() {
+                    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+                    public void onDestroy() {
+                        owner.getLifecycle().removeObserver(this);
+                        final SharedViewPool removed;
+                        synchronized (POOLS) {
+                            removed = POOLS.remove(owner);
+                        }
+                        if (removed != null) {
+                            removed.clear();
+                        }
+                    }
+                });
+            }
+            return pool;
+        }
+    }
+
+    @Override
+    public void setMaxRecycledViews(int viewType, int max) {
+        mMaxScrap.put(viewType, max);
+        super.setMaxRecycledViews(viewType, max);
+    }
+
+    /**
+     * 获取viewType的最大缓存数量
+     *
+     * @param viewType
+     * @return
+     */
+    public int getMaxRecycledViews(int viewType) {
+        return mMaxScrap.get(viewType, DEFAULT_MAX_SCRAP);
+    }
+
+    /**
+     * 最大缓存数量小于max时才修改，多个adapter设置同一种viewType时取最大值
+     *
+     * @param viewType
+     * @param max
+     */
+    public void ensureMaxRecycledViews(int viewType, int max) {
+        if (max > getMaxRecycledViews(viewType)) {
+            setMaxRecycledViews(viewType, max);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.zhy;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * 以item稳定id为key的选中项存储，需要adapter开启{@link RecyclerView.Adapter#setHasStableIds(boolean)}
+ * 数据插入、删除、移动时根据通知的范围重新映射选中项位置，选中项不会错乱，
+ * 数据整体刷新后已不在数据中的选中项会被移除
+ */
+public class StableIdSelectionStore extends RecyclerView.AdapterDataObserver implements SelectionStore {
+    private static final int UNKNOWN_POSITION = -1;
+
+    private final RecyclerView.Adapter<?> mAdapter;
+    /**
+     * 选中项id到位置的映射，位置未知时为{@link #UNKNOWN_POSITION}
+     */
+    private final LongIntHashMap mSelected = new LongIntHashMap();
+    private long[] mOrder = new long[16];
+    private int mSize;
+    private boolean mPositionsDirty;
+
+    public StableIdSelectionStore(RecyclerView.Adapter<?> adapter) {
+        if (!adapter.hasStableIds())
+            throw new IllegalStateException("adapter has no stable ids");
+
+        mAdapter = adapter;
+    }
+
+    @Override
+    public boolean contains(int position) {
+        if (position < 0 || position >= mAdapter.getItemCount() || mSelected.isEmpty())
+            return false;
+
+        return mSelected.containsKey(mAdapter.getItemId(position));
+    }
+
+    @Override
+    public boolean add(int position) {
+        final long id = mAdapter.getItemId(position);
+        if (!mSelected.put(id, position))
+            return false;
+
+        ensureOrder(mSize + 1);
+        mOrder[mSize++] = id;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int position) {
+        if (position < 0 || position >= mAdapter.getItemCount())
+            return false;
+
+        final long id = mAdapter.getItemId(position);
+        if (!mSelected.remove(id))
+            return false;
+
+        removeOrder(id);
+        return true;
+    }
+
+    @Override
+    public int removeRange(int positionStart, int itemCount) {
+        final int start = Math.max(positionStart, 0);
+        final int end = Math.min(positionStart + itemCount, mAdapter.getItemCount());
+        if (start >= end || mSelected.isEmpty())
+            return 0;
+
+        int removed = 0;
+        for (int i = start; i < end; i++) {
+            if (mSelected.remove(mAdapter.getItemId(i))) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            compactOrder();
+        }
+        return removed;
+    }
+
+    @Override
+    public int toggleRange(int positionStart, int itemCount, int maxSize) {
+        final int start = Math.max(positionStart, 0);
+        final int end = Math.min(positionStart + itemCount, mAdapter.getItemCount());
+        if (start >= end)
+            return 0;
+
+        // 先取消范围内已选中的id，原本未选中的按位置升序暂存
+        final long[] candidates = new long[end - start];
+        final int[] candidatePositions = new int[end - start];
+        int candidateCount = 0;
+        boolean removed = false;
+        for (int i = start; i < end; i++) {
+            final long id = mAdapter.getItemId(i);
+            if (mSelected.remove(id)) {
+                removed = true;
+            } else {
+                candidates[candidateCount] = id;
+                candidatePositions[candidateCount++] = i;
+            }
+        }
+        if (removed) {
+            compactOrder();
+        }
+
+        int added = 0;
+        for (int i = 0; i < candidateCount && (maxSize <= 0 || mSize < maxSize); i++) {
+            if (mSelected.put(candidates[i], candidatePositions[i])) {
+                ensureOrder(mSize + 1);
+                mOrder[mSize++] = candidates[i];
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public void clear() {
+        mSelected.clear();
+        mSize = 0;
+        mPositionsDirty = false;
+    }
+
+    @Override
+    public int size() {
+        resolvePositionsIfNeeded();
+        return mSize;
+    }
+
+    /**
+     * 获取id对应的选中项位置
+     *
+     * @param id
+     * @return 未选中或者已不在数据中返回{@link RecyclerView#NO_POSITION}
+     */
+    public int getSelectedPosition(long id) {
+        resolvePositionsIfNeeded();
+        final int position = mSelected.get(id, UNKNOWN_POSITION);
+        return position == UNKNOWN_POSITION ? RecyclerView.NO_POSITION : position;
+    }
+
+    /**
+     * 获取选中项id，元素顺序按照选择顺序排列
+     *
+     * @return
+     */
+    public long[] getSelectedIds() {
+        resolvePositionsIfNeeded();
+        return Arrays.copyOf(mOrder, mSize);
+    }
+
+    @Override
+    public void selectAll(int itemCount) {
+        clear();
+        ensureOrder(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            add(i);
+        }
+    }
+
+    @Override
+    public void invert(int itemCount) {
+        resolvePositionsIfNeeded();
+        // 范围外原本选中的id保持原有顺序，范围内新选中的id按位置升序追加
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            final int position = mSelected.get(mOrder[i], UNKNOWN_POSITION);
+            if (position == UNKNOWN_POSITION || position >= itemCount) {
+                mOrder[size++] = mOrder[i];
+            }
+        }
+        mSize = size;
+        for (int i = 0; i < itemCount; i++) {
+            final long id = mAdapter.getItemId(i);
+            if (!mSelected.remove(id)) {
+                mSelected.put(id, i);
+                ensureOrder(mSize + 1);
+                mOrder[mSize++] = id;
+            }
+        }
+    }
+
+    @Override
+    public int[] toArray() {
+        resolvePositionsIfNeeded();
+        final int[] positions = new int[mSize];
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            final int position = mSelected.get(mOrder[i], UNKNOWN_POSITION);
+            if (position != UNKNOWN_POSITION) {
+                positions[count++] = position;
+            }
+        }
+        return count == mSize ? positions : Arrays.copyOf(positions, count);
+    }
+
+    //=========位置映射=========
+
+    @Override
+    public void onChanged() {
+        // 无法得知变化范围，等到需要位置时再重新查找
+        mPositionsDirty = !mSelected.isEmpty();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (mPositionsDirty || mSelected.isEmpty())
+            return;
+
+        for (int slot = 0; slot < mSelected.capacity(); slot++) {
+            if (mSelected.isSlotUsed(slot)) {
+                final int position = mSelected.valueAt(slot);
+                if (position >= positionStart) {
+                    mSelected.setValueAt(slot, position + itemCount);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (mSelected.isEmpty())
+            return;
+
+        if (mPositionsDirty) {
+            // 位置未知时等待重新查找，已删除的id会在查找时移除
+            return;
+        }
+
+        final int positionEnd = positionStart + itemCount;
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            final long id = mOrder[i];
+            final int position = mSelected.get(id, UNKNOWN_POSITION);
+            if (position >= positionStart && position < positionEnd) {
+                mSelected.remove(id);
+                continue;
+            }
+            if (position >= positionEnd) {
+                mSelected.put(id, position - itemCount);
+            }
+            mOrder[size++] = id;
+        }
+        mSize = size;
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (mPositionsDirty || mSelected.isEmpty())
+            return;
+
+        for (int slot = 0; slot < mSelected.capacity(); slot++) {
+            if (mSelected.isSlotUsed(slot)) {
+                mSelected.setValueAt(slot, movePosition(mSelected.valueAt(slot), fromPosition, toPosition, itemCount));
+            }
+        }
+    }
+
+    static int movePosition(int position, int fromPosition, int toPosition, int itemCount) {
+        if (position >= fromPosition && position < fromPosition + itemCount)
+            return position - fromPosition + toPosition;
+
+        if (fromPosition < toPosition) {
+            if (position >= fromPosition + itemCount && position < toPosition + itemCount)
+                return position - itemCount;
+        } else if (fromPosition > toPosition) {
+            if (position >= toPosition && position < fromPosition)
+                return position + itemCount;
+        }
+        return position;
+    }
+
+    /**
+     * 数据整体变化后重新扫描一次数据，查找选中id对应的位置，已不在数据中的id取消选中，
+     * 和范围删除时的处理一致
+     */
+    private void resolvePositionsIfNeeded() {
+        if (!mPositionsDirty)
+            return;
+
+        mPositionsDirty = false;
+        for (int slot = 0; slot < mSelected.capacity(); slot++) {
+            if (mSelected.isSlotUsed(slot)) {
+                mSelected.setValueAt(slot, UNKNOWN_POSITION);
+            }
+        }
+
+        final int itemCount = mAdapter.getItemCount();
+        for (int i = 0; i < itemCount; i++) {
+            final long id = mAdapter.getItemId(i);
+            if (mSelected.containsKey(id)) {
+                mSelected.put(id, i);
+            }
+        }
+
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            final long id = mOrder[i];
+            if (mSelected.get(id, UNKNOWN_POSITION) == UNKNOWN_POSITION) {
+                mSelected.remove(id);
+            } else {
+                mOrder[size++] = id;
+            }
+        }
+        mSize = size;
+    }
+
+    /**
+     * 从选择顺序中移除已不在mSelected中的id
+     */
+    private void compactOrder() {
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mSelected.containsKey(mOrder[i])) {
+                mOrder[size++] = mOrder[i];
+            }
+        }
+        mSize = size;
+    }
+
+    private void removeOrder(long id) {
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mOrder[i] == id) {
+                System.arraycopy(mOrder, i + 1, mOrder, i, mSize - i - 1);
+                mSize--;
+                return;
+            }
+        }
+    }
+
+    private void ensureOrder(int capacity) {
+        if (capacity > mOrder.length) {
+            mOrder = Arrays.copyOf(mOrder, Math.max(capacity, mOrder.length * 2));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.zhy;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 提前创建ViewHolder放入RecyclerView的缓存池，首次绑定时不需要再inflate布局
+ */
+public final class ViewHolderPrewarmer {
+
+    private ViewHolderPrewarmer() {
+    }
+
+    /**
+     * 在主线程空闲时逐个创建ViewHolder，每次空闲只创建一个，需要在主线程调用
+     *
+     * @param recyclerView 真实的父布局，创建时会使用它生成布局参数
+     * @param adapter
+     * @param viewType
+     * @param count        创建个数
+     */
+    public static void prewarm(final RecyclerView recyclerView, final RecyclerView.Adapter<?> adapter, final int viewType, final int count) {
+        if (count <= 0)
+            return;
+
+        final RecyclerView.RecycledViewPool pool = obtainPool(recyclerView, adapter, viewType, count);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            private int mRemaining = count;
+
+            @Override
+            public boolean queueIdle() {
+                createAndPut(recyclerView, adapter, viewType, null, pool, mRemaining);
+                return --mRemaining > 0;
+            }
+        });
+    }
+
+    /**
+     * 在后台线程inflate布局，完成后在主线程创建ViewHolder并放入缓存池，需要在主线程调用。
+     * ViewHolder的创建和adapter的状态只在主线程访问，布局中不能有只能在主线程执行的操作。
+     * adapter没有实现{@link RecyclerEasyAdapter#onInflateItemView}时改为在主线程空闲时创建
+     *
+     * @param recyclerView 真实的父布局，在主线程创建ViewHolder时使用
+     * @param adapter
+     * @param viewType
+     * @param count        创建个数
+     * @param executor     inflate布局的线程池
+     */
+    public static void prewarm(final RecyclerView recyclerView, final RecyclerView.Adapter<?> adapter, final int viewType, final int count, Executor executor) {
+        if (count <= 0)
+            return;
+
+        if (!(adapter instanceof RecyclerEasyAdapter)) {
+            prewarm(recyclerView, adapter, viewType, count);
+            return;
+        }
+
+        final RecyclerEasyAdapter<?> easyAdapter = (RecyclerEasyAdapter<?>) adapter;
+        final RecyclerView.RecycledViewPool pool = obtainPool(recyclerView, adapter, viewType, count);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        // 后台线程只使用脱离界面的父布局生成布局参数，不访问真实的RecyclerView
+        final ViewGroup inflateParent = new FrameLayout(recyclerView.getContext());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    final int remaining = count - i;
+                    final View itemView = easyAdapter.onInflateItemView(inflateParent, viewType);
+                    if (itemView == null) { //不支持后台inflate
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                prewarm(recyclerView, adapter, viewType, remaining);
+                            }
+                        });
+                        return;
+                    }
+
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            createAndPut(recyclerView, adapter, viewType, itemView, pool, remaining);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * 在主线程创建ViewHolder并放入缓存池，创建期间不计入缓存池未命中
+     *
+     * @param itemView  后台inflate的布局，为null时由adapter自己inflate
+     * @param remaining 包括本次还需要放入的个数
+     */
+    private static void createAndPut(RecyclerView recyclerView, RecyclerView.Adapter<?> adapter, int viewType, View itemView,
+                                     RecyclerView.RecycledViewPool pool, int remaining) {
+        final AdapterMetrics metrics = adapter instanceof RecyclerEasyAdapter
+                ? ((RecyclerEasyAdapter<?>) adapter).getMetrics() : null;
+        if (metrics != null) {
+            metrics.setPrewarming(true);
+        }
+        final RecyclerView.ViewHolder holder;
+        try {
+            holder = itemView != null
+                    ? ((RecyclerEasyAdapter<?>) adapter).createPrewarmedViewHolder(recyclerView, viewType, itemView)
+                    : adapter.createViewHolder(recyclerView, viewType);
+        } finally {
+            if (metrics != null) {
+                metrics.setPrewarming(false);
+            }
+        }
+
+        final int before = pool.getRecycledViewCount(viewType);
+        pool.putRecycledView(holder);
+        if (pool.getRecycledViewCount(viewType) == before) {
+            // 缓存池已满，此时缓存数量等于最大容量，调大到能放下剩余的个数，不会调小调用方设置的容量
+            pool.setMaxRecycledViews(viewType, before + remaining);
+            pool.putRecycledView(holder);
+        }
+    }
+
+    /**
+     * 获取缓存池，共用缓存池提前保证有足够的容量放下预创建的ViewHolder，
+     * 普通缓存池无法获取最大容量，放入时已满才调大
+     */
+    private static RecyclerView.RecycledViewPool obtainPool(RecyclerView recyclerView, RecyclerView.Adapter<?> adapter, int viewType, int count) {
+        RecyclerView.RecycledViewPool pool = null;
+        if (adapter instanceof RecyclerEasyAdapter) {
+            pool = ((RecyclerEasyAdapter<?>) adapter).getSharedViewPool();
+        }
+        if (pool == null) {
+            pool = recyclerView.getRecycledViewPool();
+        }
+
+        if (pool instanceof SharedViewPool) {
+            ((SharedViewPool) pool).ensureMaxRecycledViews(viewType, pool.getRecycledViewCount(viewType) + count);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,129 @@
+package com.zhy.base;
+
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.zhy.AdapterMetrics;
+import com.zhy.RecyclerEasyAdapter;
+import com.zhy.SharedViewPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BaseMultiEasyAdapter 多布局使用，每种布局注册一个{@link ItemViewDelegate}，
+ * viewType为布局id，同一个页面的多个列表可以通过{@link #setSharedViewPool}共用ViewHolder
+ */
+public class BaseMultiEasyAdapter<T> extends RecyclerEasyAdapter<RecyclerView.ViewHolder> {
+
+    protected ArrayList<T> mList = new ArrayList<T>();
+
+    private final List<ItemViewDelegate<T, ?>> mDelegates = new ArrayList<>();
+    private final SparseArray<ItemViewDelegate<T, ?>> mDelegateTypes = new SparseArray<>();
+
+    /**
+     * 注册item类型，按照注册顺序匹配
+     *
+     * @param delegate
+     * @return
+     */
+    public BaseMultiEasyAdapter<T> addDelegate(ItemViewDelegate<T, ?> delegate) {
+        final int viewType = delegate.getLayoutId();
+        if (mDelegateTypes.get(viewType) != null)
+            throw new IllegalArgumentException("delegate with layout id " + viewType + " already added");
+
+        mDelegates.add(delegate);
+        mDelegateTypes.put(viewType, delegate);
+        return this;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        final T model = mList.get(position);
+        for (int i = 0; i < mDelegates.size(); i++) {
+            final ItemViewDelegate<T, ?> delegate = mDelegates.get(i);
+            if (delegate.isForViewType(model, position))
+                return delegate.getLayoutId();
+        }
+        throw new IllegalStateException("no delegate for position " + position);
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final ItemViewDelegate<T, ?> delegate = getDelegate(viewType);
+        final AdapterMetrics metrics = getMetrics();
+        final long start = metrics != null ? metrics.beginCreate(viewType) : 0;
+        View view = LayoutInflater.from(parent.getContext()).inflate(viewType, parent, false);
+        if (metrics != null) {
+            metrics.endInflate(viewType, start);
+        }
+        RecyclerView.ViewHolder holder = delegate.getViewHolder(view);
+        dispatchViewHolderCreated(holder);
+        if (metrics != null) {
+            metrics.endCreate(viewType, start);
+        }
+        return holder;
+    }
+
+    @Override
+    public void whenBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        final ItemViewDelegate delegate = getDelegate(holder.getItemViewType());
+        delegate.bindViewHolder(holder, position, mList.get(position));
+    }
+
+    @Override
+    protected void whenBindViewHolderDeferred(RecyclerView.ViewHolder holder, int position) {
+        final ItemViewDelegate delegate = getDelegate(holder.getItemViewType());
+        delegate.bindViewHolderDeferred(holder, position, mList.get(position));
+    }
+
+    @Override
+    protected void onApplySharedViewPool(RecyclerView.RecycledViewPool pool) {
+        for (int i = 0; i < mDelegates.size(); i++) {
+            final ItemViewDelegate<T, ?> delegate = mDelegates.get(i);
+            final int max = delegate.getMaxRecycledViews();
+            if (max <= 0)
+                continue;
+
+            if (pool instanceof SharedViewPool) {
+                ((SharedViewPool) pool).ensureMaxRecycledViews(delegate.getLayoutId(), max);
+            } else {
+                pool.setMaxRecycledViews(delegate.getLayoutId(), max);
+            }
+        }
+    }
+
+    private ItemViewDelegate<T, ?> getDelegate(int viewType) {
+        final ItemViewDelegate<T, ?> delegate = mDelegateTypes.get(viewType);
+        if (delegate == null)
+            throw new IllegalStateException("no delegate for view type " + viewType);
+
+        return delegate;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mList.size();
+    }
+
+    /**
+     * 设置数据
+     *
+     * @param list
+     */
+    public void setData(List<T> list) {
+        mList.clear();
+        mList.addAll(list);
+        notifyDataSetChanged();
+    }
+
+    public ArrayList<T> getList() {
+        return mList;
+    }
+}
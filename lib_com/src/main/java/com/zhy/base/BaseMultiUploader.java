@@ -1,28 +1,104 @@
 package com.zhy.base;
 
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 public abstract class BaseMultiUploader {
+    /**
+     * 小文件优先上传
+     */
+    public static final Comparator<File> SMALL_FILES_FIRST = new Comparator<File>() {
+        @Override
+        public int compare(File o1, File o2) {
+            return Long.compare(o1.length(), o2.length());
+        }
+    };
+
     private final AppCompatActivity mContext;
+    private final UploadScheduler mScheduler = new UploadScheduler();
 
     private final Map<Integer, String> mListPath = new LinkedHashMap<>();
     private final Map<Integer, String> mListUploaded = new LinkedHashMap<>();
-    private final Map<Integer, Long> mListProgress = new LinkedHashMap<>();
+    private final Map<Integer, String> mListFailed = new LinkedHashMap<>();
+    private List<String> mBatchPaths = new ArrayList<>();
+    private int[] mAttempts = new int[0];
+    /**
+     * 每个文件第一次开始上传的时间，未开始时为0
+     */
+    private long[] mStartTimes = new long[0];
+    /**
+     * 每个文件从开始到结束的毫秒数
+     */
+    private long[] mDurations = new long[0];
+    private boolean mKeepResults = true;
+    private int mBatchId;
+    private UploadRetryPolicy mRetryPolicy;
+    private UploadDedupCache mDedupCache;
+    private boolean mAsyncValidation;
+    /**
+     * 每个文件的内容哈希，未开启去重或计算失败时为null
+     */
+    private String[] mHashes = new String[0];
+    /**
+     * 与批次内其它文件内容相同时，记录实际上传的文件，否则为-1
+     */
+    private int[] mLeaders = new int[0];
+    /**
+     * 本批次每种内容实际上传的文件，上传失败后由之后计算出相同哈希的文件重新上传
+     */
+    private final Map<String, Integer> mDedupLeaders = new HashMap<>();
+    /**
+     * 本批次已上传成功的内容哈希到结果的映射，写入缓存之前计算出哈希的文件也能直接使用
+     */
+    private final Map<String, String> mDedupResults = new HashMap<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 每个文件已上传的字节数，在上传线程更新
+     */
+    private volatile AtomicLongArray mListProgress = new AtomicLongArray(0);
+    private final AtomicLong mProgress = new AtomicLong();
+    private final AtomicBoolean mProgressPosted = new AtomicBoolean();
+    private long mProgressInterval = 16;
+    private volatile long mLastProgressTime;
 
-    private boolean mUploading;
+    /**
+     * 上传中文件的取消信号，每次尝试一个
+     */
+    private final Map<Integer, CancellationSignal> mSignals = new HashMap<>();
+
+    private volatile boolean mUploading;
     private Callback mCallback;
     private long mTotalFilesSize;
+    private boolean mCancelOnDestroy;
+    private final LifecycleObserver mLifecycleObserver = new LifecycleObserver() {
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            setCancelOnDestroy(false);
+            cancel();
+        }
+    };
 
     public BaseMultiUploader(AppCompatActivity context) {
         mContext = context;
@@ -41,6 +117,99 @@ public abstract class BaseMultiUploader {
         return mContext;
     }
 
+    /**
+     * 设置是否在页面销毁时自动取消上传，见{@link #cancel()}
+     *
+     * @param cancelOnDestroy
+     */
+    public final void setCancelOnDestroy(boolean cancelOnDestroy) {
+        if (cancelOnDestroy == mCancelOnDestroy)
+            return;
+
+        mCancelOnDestroy = cancelOnDestroy;
+        if (cancelOnDestroy) {
+            mContext.getLifecycle().addObserver(mLifecycleObserver);
+        } else {
+            mContext.getLifecycle().removeObserver(mLifecycleObserver);
+        }
+    }
+
+    /**
+     * 设置进度回调的最小间隔，间隔内的多次进度合并为一次回调，默认为16ms
+     *
+     * @param intervalMillis
+     */
+    public final void setProgressInterval(long intervalMillis) {
+        mProgressInterval = intervalMillis;
+    }
+
+    /**
+     * 设置单个文件失败后的重试策略，只对{@link #notifyUploadError(UploadProxy, String)}有效，默认不重试
+     *
+     * @param retryPolicy
+     */
+    public final void setRetryPolicy(UploadRetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * 设置上传去重缓存，上传前在后台计算文件内容哈希，缓存中有结果的文件不再上传，
+     * 同一批次内容相同的文件只上传一次
+     *
+     * @param dedupCache 为null时关闭去重
+     */
+    public final void setDedupCache(UploadDedupCache dedupCache) {
+        mDedupCache = dedupCache;
+    }
+
+    /**
+     * 设置是否保留每个文件的上传结果直到批次结束，默认保留。
+     * 文件很多时可以关闭以节省内存，配合{@link FileCallback}逐个处理结果，
+     * 关闭后onSuccess的结果列表为空，{@link BatchResult}中成功文件的result为null
+     *
+     * @param keepResults
+     */
+    public final void setKeepResults(boolean keepResults) {
+        mKeepResults = keepResults;
+    }
+
+    /**
+     * 设置是否异步校验文件，开启后在线程池中并行校验文件并计算总大小，不会阻塞调用线程，
+     * 有文件不存在时不上传任何文件，回调{@link OnInvalidFilesListener}后回调onError，而不是抛出异常
+     *
+     * @param asyncValidation
+     */
+    public final void setAsyncValidation(boolean asyncValidation) {
+        mAsyncValidation = asyncValidation;
+    }
+
+    /**
+     * 设置同时上传的最大文件数，默认为3
+     *
+     * @param maxParallelism
+     */
+    public final void setMaxParallelism(int maxParallelism) {
+        mScheduler.setMaxParallelism(maxParallelism);
+    }
+
+    /**
+     * 设置上传顺序，默认按传入顺序
+     *
+     * @param comparator 例如{@link #SMALL_FILES_FIRST}
+     */
+    public final void setPriorityComparator(Comparator<File> comparator) {
+        mScheduler.setComparator(comparator);
+    }
+
+    /**
+     * 设置是否根据吞吐量自动调整同时上传的文件数，不会超过{@link #setMaxParallelism(int)}
+     *
+     * @param adaptive
+     */
+    public final void setAdaptiveConcurrency(boolean adaptive) {
+        mScheduler.setAdaptive(adaptive);
+    }
+
     /**
      * 上传文件
      *
@@ -67,16 +236,63 @@ public abstract class BaseMultiUploader {
             return false;
 
         mUploading = true;
-        mListPath.clear();
-        mListUploaded.clear();
-        uploadFileInternal(listPath);
+        synchronized (mListPath) {
+            mBatchId++;
+            mListPath.clear();
+            mListUploaded.clear();
+            mListFailed.clear();
+            mBatchPaths = new ArrayList<>(listPath);
+            mAttempts = new int[listPath.size()];
+            mStartTimes = new long[listPath.size()];
+            mDurations = new long[listPath.size()];
+            mHashes = new String[listPath.size()];
+            mLeaders = new int[listPath.size()];
+            Arrays.fill(mLeaders, -1);
+            mDedupLeaders.clear();
+            mDedupResults.clear();
+        }
+        mTotalFilesSize = 0;
+        mListProgress = new AtomicLongArray(listPath.size());
+        mProgress.set(0);
+        if (mAsyncValidation) {
+            validateAsync(mBatchPaths);
+        } else {
+            uploadFileInternal(listPath);
+        }
         return true;
     }
 
+    /**
+     * 取消本批次上传，上传中的文件通过{@link UploadProxy#getCancellationSignal()}中止，
+     * 排队和等待重试的文件不再开始。
+     * 取消后不会回调onSuccess、onError或其它任何回调，调用方需要自己处理取消后的界面状态，
+     * 之前的上传之后再通知结果或进度时会被忽略，不会计入下一批次
+     */
+    public final void cancel() {
+        if (!mUploading)
+            return;
+
+        mUploading = false;
+        mScheduler.cancelPending();
+        final List<CancellationSignal> signals;
+        synchronized (mListPath) {
+            mBatchId++;
+            mListPath.clear();
+            signals = new ArrayList<>(mSignals.values());
+            mSignals.clear();
+        }
+        mMainHandler.removeCallbacks(mDispatchProgress);
+        mProgressPosted.set(false);
+        for (CancellationSignal signal : signals) {
+            signal.cancel();
+        }
+    }
+
     private void uploadFileInternal(List<String> paths) {
         if (paths == null || paths.size() == 0)
             throw new IllegalArgumentException("path is empty");
 
+        final long[] sizes = new long[paths.size()];
         for (int i = 0; i < paths.size(); i++) {
             String path = paths.get(i);
             File file = new File(path);
@@ -84,80 +300,575 @@ public abstract class BaseMultiUploader {
                 throw new IllegalArgumentException("file not exists:" + path);
             }
 
-            mListPath.put(i, path);
-            mListUploaded.put(i, "");
-            mTotalFilesSize += file.length();
+            sizes[i] = file.length();
         }
+        startBatch(paths, sizes);
+    }
 
-        for (int i = 0; i < paths.size(); i++) {
-            String path = paths.get(i);
-            UploadProxy impl = implUploadProxy();
-            impl.setTag(i);
-            impl.onUploadImpl(path);
+    /**
+     * 在线程池中校验文件，全部有效时开始上传
+     */
+    private void validateAsync(final List<String> paths) {
+        final int batchId = mBatchId;
+        FileValidator.validate(paths, new FileValidator.Listener() {
+            @Override
+            public void onValidated(long[] sizes, List<String> invalidPaths) {
+                if (batchId != mBatchId || !mUploading)
+                    return;
+
+                if (invalidPaths.isEmpty()) {
+                    startBatch(paths, sizes);
+                } else {
+                    abortInvalidFiles(paths, sizes, invalidPaths);
+                }
+            }
+        });
+    }
+
+    /**
+     * 有无效文件时不上传，无效文件计入失败，其余计入未上传
+     */
+    private void abortInvalidFiles(List<String> paths, long[] sizes, List<String> invalidPaths) {
+        final String msg = "file not exists:" + invalidPaths.get(0);
+        final BatchResult result;
+        synchronized (mListPath) {
+            for (int i = 0; i < paths.size(); i++) {
+                mListPath.put(i, paths.get(i));
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                if (sizes[i] == FileValidator.INVALID) {
+                    mListFailed.put(i, "file not exists:" + paths.get(i));
+                    mListPath.remove(i);
+                }
+            }
+            result = buildBatchResult();
+            mListPath.clear();
+        }
+
+        if (mCallback instanceof OnInvalidFilesListener) {
+            ((OnInvalidFilesListener) mCallback).onInvalidFiles(invalidPaths);
+        }
+        notifyCallbackError(msg, result);
+    }
+
+    /**
+     * 文件校验完成后开始上传
+     *
+     * @param paths
+     * @param sizes 每个文件的大小
+     */
+    private void startBatch(List<String> paths, long[] sizes) {
+        final List<UploadScheduler.Task> tasks = new ArrayList<>(paths.size());
+        synchronized (mListPath) {
+            for (int i = 0; i < paths.size(); i++) {
+                final String path = paths.get(i);
+                mListPath.put(i, path);
+                if (mKeepResults) {
+                    mListUploaded.put(i, "");
+                }
+                mTotalFilesSize += sizes[i];
+                tasks.add(new UploadScheduler.Task(i, path, sizes[i]));
+            }
+        }
+
+        if (mDedupCache == null) {
+            mScheduler.submit(tasks);
+            startReadyUploads();
+        } else {
+            lookupDedupCache(mDedupCache, tasks);
+        }
+    }
+
+    /**
+     * 在后台按上传顺序逐个计算哈希并查找缓存，每个文件计算完成后在主线程立即开始上传，
+     * 不需要等整批计算完成
+     */
+    private void lookupDedupCache(final UploadDedupCache dedupCache, List<UploadScheduler.Task> tasks) {
+        final int batchId = mBatchId;
+        final List<UploadScheduler.Task> sorted = mScheduler.sort(tasks);
+        mScheduler.submit(Collections.<UploadScheduler.Task>emptyList());
+        for (final UploadScheduler.Task task : sorted) {
+            dedupCache.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (mListPath) {
+                        if (batchId != mBatchId || !mUploading)
+                            return;
+                    }
+
+                    String hash;
+                    String cached = null;
+                    try {
+                        hash = UploadDedupCache.hash(new File(task.path));
+                        cached = dedupCache.get(hash);
+                    } catch (IOException e) {
+                        hash = null; //无法计算时直接上传
+                    }
+
+                    final String fileHash = hash;
+                    final String fileCached = cached;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onDedupLookup(batchId, task, fileHash, fileCached);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * 命中缓存或本批次已上传过相同内容的文件直接记为成功，
+     * 与上传中的文件内容相同时等待它的结果，其余文件立即加入上传队列
+     */
+    private void onDedupLookup(int batchId, UploadScheduler.Task task, String hash, String cached) {
+        final List<BatchResult.FileResult> events = newFileEvents();
+        final boolean finished;
+        boolean upload = false;
+        synchronized (mListPath) {
+            if (batchId != mBatchId || !mUploading)
+                return;
+
+            mHashes[task.tag] = hash;
+            if (hash == null) {
+                upload = true;
+            } else {
+                final String result = cached != null ? cached : mDedupResults.get(hash);
+                final Integer leader = mDedupLeaders.get(hash);
+                if (result != null) {
+                    settle(task.tag, result, null, events);
+                    mTotalFilesSize -= task.size;
+                } else if (leader != null && mListPath.containsKey(leader)) {
+                    mLeaders[task.tag] = leader;
+                    mTotalFilesSize -= task.size;
+                } else {
+                    mDedupLeaders.put(hash, task.tag);
+                    upload = true;
+                }
+            }
+            finished = mListPath.size() == 0;
+        }
+
+        dispatchFileEvents(batchId, events);
+        if (finished) {
+            finishBatch();
+        } else if (upload) {
+            mScheduler.add(task);
+            startReadyUploads();
+        }
+    }
+
+    /**
+     * 内容相同的文件跟随实际上传文件的结果，耗时与实际上传文件相同，需要在mListPath的锁内调用
+     *
+     * @param leader 实际上传的文件
+     * @param result 成功时的结果
+     * @param error  失败时的错误消息
+     * @param events 不需要逐个回调时为null
+     */
+    private void completeFollowers(int leader, String result, String error, List<BatchResult.FileResult> events) {
+        for (int tag = 0; tag < mLeaders.length; tag++) {
+            if (mLeaders[tag] != leader || !mListPath.containsKey(tag))
+                continue;
+
+            mStartTimes[tag] = mStartTimes[leader];
+            settle(tag, result, error, events);
+        }
+    }
+
+    /**
+     * 记录文件的最终结果和耗时，需要在mListPath的锁内调用
+     *
+     * @param result 成功时的结果
+     * @param error  失败时的错误消息
+     * @param events 不需要逐个回调时为null
+     */
+    private void settle(int tag, String result, String error, List<BatchResult.FileResult> events) {
+        mSignals.remove(tag);
+        if (mStartTimes[tag] > 0) {
+            mDurations[tag] = SystemClock.elapsedRealtime() - mStartTimes[tag];
+        }
+        if (error != null) {
+            mListFailed.put(tag, error);
+        } else if (mKeepResults) {
+            mListUploaded.put(tag, result);
+        }
+        mListPath.remove(tag);
+        if (events != null) {
+            events.add(new BatchResult.FileResult(tag, mBatchPaths.get(tag), result, error, mAttempts[tag], mDurations[tag]));
+        }
+    }
+
+    /**
+     * 回调实现了{@link FileCallback}时返回用于收集事件的列表，否则返回null
+     */
+    private List<BatchResult.FileResult> newFileEvents() {
+        return mCallback instanceof FileCallback ? new ArrayList<BatchResult.FileResult>(1) : null;
+    }
+
+    /**
+     * 在主线程逐个回调文件结束事件，在批次结束回调之前，批次已被替换时不回调
+     */
+    private void dispatchFileEvents(final int batchId, final List<BatchResult.FileResult> events) {
+        if (events == null || events.isEmpty())
+            return;
+
+        if (Looper.getMainLooper() == Looper.myLooper()) {
+            if (batchId != mBatchId || !mUploading || !(mCallback instanceof FileCallback))
+                return;
+
+            final FileCallback callback = (FileCallback) mCallback;
+            for (BatchResult.FileResult event : events) {
+                if (event.error == null) {
+                    callback.onFileSuccess(event);
+                } else {
+                    callback.onFileError(event);
+                }
+            }
+        } else {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchFileEvents(batchId, events);
+                }
+            });
+        }
+    }
+
+    /**
+     * 在主线程开始可以上传的文件，同时上传的文件数由调度器限制
+     */
+    private void startReadyUploads() {
+        if (Looper.getMainLooper() == Looper.myLooper()) {
+            for (UploadScheduler.Task task : mScheduler.pollReady()) {
+                startUpload(task.tag, task.path);
+            }
+        } else {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    startReadyUploads();
+                }
+            });
         }
     }
 
+    private void startUpload(int tag, String path) {
+        final CancellationSignal signal = new CancellationSignal();
+        synchronized (mListPath) {
+            if (mAttempts[tag]++ == 0) {
+                mStartTimes[tag] = SystemClock.elapsedRealtime();
+            }
+            mSignals.put(tag, signal);
+        }
+        UploadProxy impl = implUploadProxy();
+        impl.setTag(tag);
+        impl.setCancellationSignal(signal);
+        impl.onUploadImpl(path);
+    }
+
     protected abstract UploadProxy implUploadProxy();
 
+    /**
+     * 创建上传文件的数据源，写入时按粒度自动通知{@link #notifyUploadProgress}，上传取消后中止写入
+     *
+     * @param impl
+     * @param path
+     * @return
+     */
+    protected final FileUploadBody createUploadBody(final UploadProxy impl, String path) {
+        final FileUploadBody body = new FileUploadBody(new File(path));
+        body.setProgressListener(new ChunkedUpload.ProgressListener() {
+            @Override
+            public void onProgress(long bytesWrite, long contentLength) {
+                notifyUploadProgress(impl, bytesWrite, contentLength);
+            }
+        }, FileUploadBody.DEFAULT_PROGRESS_GRANULARITY);
+        body.setCancellationSignal(impl.getCancellationSignal());
+        return body;
+    }
+
     /**
      * 通知本次上传成功
      *
      * @param result 返回结果
      */
     protected final void notifyUploadSuccess(UploadProxy impl, String result) {
-        mListUploaded.put(impl.getTag(), result);
-        mListPath.remove(impl.getTag());
-        if (mListPath.size() == 0) {
-            ArrayList<String> list = new ArrayList<>(mListUploaded.values());
-            notifyCallbackSuccess(list);
+        final List<BatchResult.FileResult> events = newFileEvents();
+        final boolean finished;
+        final String hash;
+        final int batchId;
+        synchronized (mListPath) {
+            if (!isCurrentAttempt(impl)) //已取消、已结束或不是本批次的上传
+                return;
+
+            mScheduler.onFinished(impl.getTag(), true);
+            settle(impl.getTag(), result, null, events);
+            completeFollowers(impl.getTag(), result, null, events);
+            finished = mListPath.size() == 0;
+            hash = mHashes[impl.getTag()];
+            batchId = mBatchId;
+            if (hash != null && result != null) {
+                mDedupResults.put(hash, result);
+            }
+        }
+
+        final UploadDedupCache dedupCache = mDedupCache;
+        if (dedupCache != null && hash != null && result != null) {
+            dedupCache.putAsync(hash, result);
+        }
+
+        dispatchFileEvents(batchId, events);
+        if (finished) {
+            finishBatch();
+        } else {
+            startReadyUploads();
         }
     }
 
+    /**
+     * 通知某个文件的上传进度，可以在任意线程调用，
+     * 进度按差值累加到总进度，在主线程按{@link #setProgressInterval(long)}的间隔合并回调。
+     * 只根据tag无法区分取消前的上传，取消后会重新上传时使用{@link #notifyUploadProgress(UploadProxy, long, long)}
+     *
+     * @param tag           {@link UploadProxy#getTag()}
+     * @param bytesWrite    该文件已上传的字节数
+     * @param contentLength 该文件的总字节数
+     */
     protected final void notifyUploadProgress(int tag, long bytesWrite, long contentLength) {
-        mListProgress.put(tag, bytesWrite);
-        long cur_progress = 0;
-        for (Long progress : mListProgress.values()) {
-            cur_progress += progress;
+        synchronized (mListPath) {
+            if (!mSignals.containsKey(tag)) //该文件没有在上传
+                return;
         }
-        mCallback.onProgress(cur_progress, mTotalFilesSize);
+        updateProgress(tag, bytesWrite, contentLength);
     }
 
     /**
-     * 通知本次上传失败
+     * 通知某个文件的上传进度，可以在任意线程调用，已取消或不是本批次的上传不会计入进度
+     *
+     * @param impl
+     * @param bytesWrite    该文件已上传的字节数
+     * @param contentLength 该文件的总字节数
+     */
+    protected final void notifyUploadProgress(UploadProxy impl, long bytesWrite, long contentLength) {
+        synchronized (mListPath) {
+            if (!isCurrentAttempt(impl))
+                return;
+        }
+        updateProgress(impl.getTag(), bytesWrite, contentLength);
+    }
+
+    /**
+     * 是否为该文件当前的上传，取消、结束或重试后之前的上传不再是当前上传，需要在mListPath的锁内调用
+     */
+    private boolean isCurrentAttempt(UploadProxy impl) {
+        final CancellationSignal signal = impl.getCancellationSignal();
+        return signal != null && mSignals.get(impl.getTag()) == signal;
+    }
+
+    private void updateProgress(int tag, long bytesWrite, long contentLength) {
+        final AtomicLongArray listProgress = mListProgress;
+        if (tag < 0 || tag >= listProgress.length())
+            return;
+
+        final long old = listProgress.getAndSet(tag, bytesWrite);
+        mProgress.addAndGet(bytesWrite - old);
+        if (mProgressPosted.compareAndSet(false, true)) {
+            final long delay = mLastProgressTime + mProgressInterval - SystemClock.uptimeMillis();
+            mMainHandler.postDelayed(mDispatchProgress, Math.max(0, delay));
+        }
+    }
+
+    private final Runnable mDispatchProgress = new Runnable() {
+        @Override
+        public void run() {
+            mProgressPosted.set(false);
+            mLastProgressTime = SystemClock.uptimeMillis();
+            if (mUploading) {
+                mCallback.onProgress(mProgress.get(), mTotalFilesSize);
+            }
+        }
+    };
+
+    /**
+     * 通知本次上传失败，中止整批上传，其它上传中的文件被取消，未完成的文件计入{@link BatchResult#getSkipped()}。
+     * 无法区分取消前的上传，取消后会重新上传时使用{@link #notifyBatchError(UploadProxy, String)}
      *
      * @param msg 错误消息
      */
     protected final void notifyUploadError(final String msg) {
-        notifyCallbackError(msg);
+        abortBatch(msg);
+    }
+
+    /**
+     * 某个文件上传失败时中止整批上传，同{@link #notifyUploadError(String)}，
+     * 已取消或不是本批次的上传通知时忽略
+     *
+     * @param impl
+     * @param msg  错误消息
+     */
+    protected final void notifyBatchError(UploadProxy impl, String msg) {
+        synchronized (mListPath) {
+            if (!isCurrentAttempt(impl))
+                return;
+        }
+        abortBatch(msg);
+    }
+
+    private void abortBatch(String msg) {
+        mScheduler.cancelPending();
+        final BatchResult result;
+        final List<CancellationSignal> signals;
+        synchronized (mListPath) {
+            result = buildBatchResult();
+            mListPath.clear();
+            signals = new ArrayList<>(mSignals.values());
+            mSignals.clear();
+        }
+        for (CancellationSignal signal : signals) {
+            signal.cancel();
+        }
+        notifyCallbackError(msg, result);
+    }
+
+    /**
+     * 通知某个文件上传失败，只影响该文件。
+     * 按{@link #setRetryPolicy(UploadRetryPolicy)}延迟后重新上传，不再重试时计入{@link BatchResult#getFailed()}，
+     * 其它文件继续上传，全部结束后回调
+     *
+     * @param impl
+     * @param msg  错误消息
+     */
+    protected final void notifyUploadError(UploadProxy impl, String msg) {
+        final int tag = impl.getTag();
+        final UploadRetryPolicy retryPolicy = mRetryPolicy;
+        final List<BatchResult.FileResult> events = newFileEvents();
+        final String path;
+        final int batchId;
+        long retryDelay = -1;
+        boolean finished = false;
+        synchronized (mListPath) {
+            if (!isCurrentAttempt(impl)) //已取消、已结束或不是本批次的上传
+                return;
+
+            path = mListPath.get(tag);
+
+            batchId = mBatchId;
+            mSignals.remove(tag);
+            if (retryPolicy != null && retryPolicy.shouldRetry(mAttempts[tag], msg)) {
+                retryDelay = retryPolicy.getRetryDelay(mAttempts[tag]);
+            } else {
+                mScheduler.onFinished(tag, false);
+                settle(tag, null, msg, events);
+                completeFollowers(tag, null, msg, events);
+                finished = mListPath.size() == 0;
+            }
+        }
+
+        resetProgress(tag);
+        dispatchFileEvents(batchId, events);
+        if (retryDelay >= 0) { //重试期间继续占用该文件的上传名额
+            mMainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (mListPath) {
+                        if (batchId != mBatchId || !mListPath.containsKey(tag))
+                            return;
+                    }
+                    startUpload(tag, path);
+                }
+            }, retryDelay);
+        } else if (finished) {
+            finishBatch();
+        } else {
+            startReadyUploads();
+        }
+    }
+
+    private void resetProgress(int tag) {
+        final AtomicLongArray listProgress = mListProgress;
+        if (tag >= 0 && tag < listProgress.length()) {
+            mProgress.addAndGet(-listProgress.getAndSet(tag, 0));
+        }
+    }
+
+    /**
+     * 全部文件结束，有文件失败时回调onError
+     */
+    private void finishBatch() {
+        final BatchResult result;
+        final List<String> listResult;
+        synchronized (mListPath) {
+            result = buildBatchResult();
+            listResult = mKeepResults ? new ArrayList<>(mListUploaded.values()) : Collections.<String>emptyList();
+        }
+
+        if (result.isAllSucceeded()) {
+            notifyCallbackSuccess(listResult, result);
+        } else {
+            notifyCallbackError(result.getFailed().get(0).error, result);
+        }
     }
 
-    private void notifyCallbackSuccess(final List<String> listResult) {
+    /**
+     * 需要在mListPath的锁内调用
+     */
+    private BatchResult buildBatchResult() {
+        final List<BatchResult.FileResult> succeeded = new ArrayList<>();
+        final List<BatchResult.FileResult> failed = new ArrayList<>();
+        final List<BatchResult.FileResult> skipped = new ArrayList<>();
+        for (int tag = 0; tag < mBatchPaths.size(); tag++) {
+            final String path = mBatchPaths.get(tag);
+            final int attempts = mAttempts[tag];
+            final long duration = mDurations[tag];
+            if (mListFailed.containsKey(tag)) {
+                failed.add(new BatchResult.FileResult(tag, path, null, mListFailed.get(tag), attempts, duration));
+            } else if (mListPath.containsKey(tag)) {
+                skipped.add(new BatchResult.FileResult(tag, path, null, null, attempts, 0));
+            } else {
+                succeeded.add(new BatchResult.FileResult(tag, path, mListUploaded.get(tag), null, attempts, duration));
+            }
+        }
+        return new BatchResult(succeeded, failed, skipped);
+    }
+
+    private void notifyCallbackSuccess(final List<String> listResult, final BatchResult result) {
+        if (!mUploading) //已取消
+            return;
+
         if (Looper.getMainLooper() == Looper.myLooper()) {
             mUploading = false;
+            if (mCallback instanceof BatchCallback) {
+                ((BatchCallback) mCallback).onBatchFinished(result);
+            }
             mCallback.onSuccess(listResult);
         } else {
             new Handler(Looper.getMainLooper()).post(new Runnable() {
                 @Override
                 public void run() {
-                    notifyCallbackSuccess(listResult);
+                    notifyCallbackSuccess(listResult, result);
                 }
             });
         }
     }
 
-    private void notifyCallbackError(final String msg) {
+    private void notifyCallbackError(final String msg, final BatchResult result) {
         if (!mUploading) {
             //不通知
             return;
         }
         if (Looper.getMainLooper() == Looper.myLooper()) {
             mUploading = false;
+            if (mCallback instanceof BatchCallback) {
+                ((BatchCallback) mCallback).onBatchFinished(result);
+            }
             mCallback.onError(msg);
         } else {
             new Handler(Looper.getMainLooper()).post(new Runnable() {
                 @Override
                 public void run() {
-                    notifyCallbackError(msg);
+                    notifyCallbackError(msg, result);
                 }
             });
         }
@@ -187,9 +898,41 @@ public abstract class BaseMultiUploader {
         void onProgress(long progress, long total_progress);
     }
 
+    /**
+     * 需要每个文件上传结果的回调
+     */
+    public interface BatchCallback extends Callback {
+        /**
+         * 批次结束时回调，在{@link #onSuccess(List)}或{@link #onError(String)}之前
+         *
+         * @param result 成功、失败和未上传的文件
+         */
+        void onBatchFinished(BatchResult result);
+    }
+
+    /**
+     * 需要逐个文件结果的回调，每个文件结束时在主线程回调，不需要等待整批完成
+     */
+    public interface FileCallback extends Callback {
+        /**
+         * 单个文件上传成功，包括命中去重缓存的文件
+         *
+         * @param result 文件位置、路径、结果和耗时
+         */
+        void onFileSuccess(BatchResult.FileResult result);
+
+        /**
+         * 单个文件重试后仍然失败，其它文件继续上传
+         *
+         * @param result 文件位置、路径、错误消息和耗时
+         */
+        void onFileError(BatchResult.FileResult result);
+    }
+
     public abstract static class UploadProxy {
 
         private int tag;
+        private CancellationSignal cancellationSignal;
 
         public UploadProxy() {
 
@@ -203,6 +946,19 @@ public abstract class BaseMultiUploader {
             return tag;
         }
 
+        void setCancellationSignal(CancellationSignal cancellationSignal) {
+            this.cancellationSignal = cancellationSignal;
+        }
+
+        /**
+         * 本次上传的取消信号，取消后应尽快中止请求，可以通过setOnCancelListener取消网络请求
+         *
+         * @return
+         */
+        public CancellationSignal getCancellationSignal() {
+            return cancellationSignal;
+        }
+
         public UploadProxy get() {
             return this;
         }
@@ -1,20 +1,28 @@
 package com.zhy.base;
 
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.zhy.AdapterMetrics;
 import com.zhy.RecyclerEasyAdapter;
+import com.zhy.SelectionStore;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * yhz on 2020/8/21
@@ -22,22 +30,113 @@ import java.util.List;
  */
 public abstract class BaseSimpleEasyAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerEasyAdapter {
 
+    private static final int[] EMPTY_POSITIONS = new int[0];
+
+    private static Executor sDefaultDiffExecutor;
+
     protected ArrayList<T> mList = new ArrayList<T>();
 
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private DiffUtil.ItemCallback<T> mDiffCallback;
+    private Executor mDiffExecutor;
+    private volatile int mDiffGeneration;
+    private ViewHolderFactory<VH> mViewHolderFactory;
+    private PagedData<T> mPagedData;
+
+    private ListFilter<T> mFilter;
+    private String mFilterQuery;
+    private List<T> mFilterSource;
+    /**
+     * 过滤期间设置了新数据，{@link #mFilterSource}是新数据，过滤结果返回后才替换{@link #mList}
+     */
+    private boolean mFilterSourceChanged;
+    private int[] mFilterPositions;
+    private CancellationSignal mFilterSignal;
+    private int[] mHiddenSelected = EMPTY_POSITIONS;
+    private int mHiddenSingleSelected = RecyclerView.NO_POSITION;
+
     @Override
     public void whenBindViewHolder(RecyclerView.ViewHolder holder, int position) {
-        bindViewHolder((VH) holder, position, mList.get(position));
+        bindViewHolder((VH) holder, position, getItem(position));
+    }
+
+    /**
+     * 获取某个位置的数据
+     *
+     * @param position
+     * @return 分页模式下未加载的位置返回null
+     */
+    protected T getItem(int position) {
+        if (mPagedData != null)
+            return mPagedData.get(position);
+
+        if (mFilterPositions != null)
+            return mList.get(mFilterPositions[position]);
+
+        return mList.get(position);
     }
 
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext()).inflate(getLayoutId(), null);
-        return getViewHolder(view);
+        final AdapterMetrics metrics = getMetrics();
+        final long start = metrics != null ? metrics.beginCreate(viewType) : 0;
+        View view = pollPrewarmedItemView(viewType);
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext()).inflate(getLayoutId(), parent, false);
+        }
+        if (metrics != null) {
+            metrics.endInflate(viewType, start);
+        }
+        VH holder = getViewHolder(view);
+        dispatchViewHolderCreated(holder);
+        if (metrics != null) {
+            metrics.endCreate(viewType, start);
+        }
+        return holder;
+    }
+
+    /**
+     * 后台预创建时inflate布局，只使用{@link #getLayoutId()}
+     */
+    @Override
+    protected View onInflateItemView(ViewGroup parent, int viewType) {
+        return LayoutInflater.from(parent.getContext()).inflate(getLayoutId(), parent, false);
     }
 
     protected abstract void bindViewHolder(VH holder, int position, T model);
 
+    @Override
+    public void onViewAttachedToWindow(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewAttachedToWindow(holder);
+        if (mPagedData != null) {
+            mPagedData.onViewAttached(holder.getLayoutPosition());
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewDetachedFromWindow(holder);
+        if (mPagedData != null) {
+            mPagedData.onViewDetached(holder.getLayoutPosition());
+        }
+    }
+
+    @Override
+    protected void whenBindViewHolderDeferred(RecyclerView.ViewHolder holder, int position) {
+        bindViewHolderDeferred((VH) holder, position, getItem(position));
+    }
+
+    /**
+     * 延迟绑定模式下的耗时绑定，见{@link #setDeferredBindEnabled(boolean)}
+     *
+     * @param holder
+     * @param position
+     * @param model
+     */
+    protected void bindViewHolderDeferred(VH holder, int position, T model) {
+    }
+
     /**
      * 生成泛型ViewHolder
      *
@@ -45,43 +144,510 @@ public abstract class BaseSimpleEasyAdapter<T, VH extends RecyclerView.ViewHolde
      * @return
      */
     protected VH getViewHolder(View view) {
-        Type type = getClass().getGenericSuperclass();
-        ParameterizedType pt = (ParameterizedType) type;
-        Class modelClass = (Class) pt.getActualTypeArguments()[1];
-        try {
-            Constructor con = modelClass.getConstructor(View.class);
-            return (VH) con.newInstance(view);
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        }
-        return null;
+        if (mViewHolderFactory == null) {
+            mViewHolderFactory = getViewHolderFactory();
+        }
+        return mViewHolderFactory.create(view);
+    }
+
+    /**
+     * 获取ViewHolder工厂，默认根据泛型解析，每个adapter类只解析一次，
+     * ViewHolder标记{@link EasyViewHolder}时使用注解处理器生成的工厂
+     *
+     * @return
+     */
+    protected ViewHolderFactory<VH> getViewHolderFactory() {
+        return ViewHolderFactories.getByTypeArgument(getClass(), BaseSimpleEasyAdapter.class, 1);
     }
 
     @Override
     public int getItemCount() {
+        if (mPagedData != null)
+            return mPagedData.size();
+
+        if (mFilterPositions != null)
+            return mFilterPositions.length;
+
         return mList.size();
     }
 
+    /**
+     * 默认viewType为0，设置了{@link #setSharedViewPool}时以布局id作为viewType，共用缓存池时不会和其他adapter冲突。
+     * 共用缓存池需要在绑定到RecyclerView之前设置
+     */
+    @Override
+    public int getItemViewType(int position) {
+        return getSimpleViewType();
+    }
+
+    private int getSimpleViewType() {
+        return getSharedViewPool() != null ? getLayoutId() : 0;
+    }
+
     /**
      * 设置数据
      *
      * @param list
      */
     public void setData(List<T> list) {
+        if (mFilterQuery != null || mFilterSourceChanged) {
+            setFilteredData(list);
+            return;
+        }
+
+        if (mDiffCallback != null && mPagedData == null) {
+            submitDiff(list);
+            return;
+        }
+
+        if (mPagedData != null) { //退出分页模式
+            mPagedData.detach();
+            mPagedData = null;
+        }
+        mDiffGeneration++; //取消进行中的差量计算
         mList.clear();
         mList.addAll(list);
         notifyDataSetChanged();
     }
 
+    /**
+     * 设置分页数据源，设置后数据不再保存在{@link #getList()}中，getItemCount返回数据总条数，
+     * 未加载的位置绑定时model为null，需要显示占位。调用{@link #setData(List)}会退出分页模式
+     *
+     * @param pagedData null表示退出分页模式
+     */
+    public void setPagedData(PagedData<T> pagedData) {
+        if (mPagedData != null) {
+            mPagedData.detach();
+        }
+        mDiffGeneration++; //取消进行中的差量计算
+        resetFilter();
+        mList.clear();
+        mPagedData = pagedData;
+        if (pagedData != null) {
+            pagedData.attach(this);
+        }
+        notifyDataSetChanged();
+    }
+
+    public PagedData<T> getPagedData() {
+        return mPagedData;
+    }
+
+    /**
+     * 设置item差量比较，设置后{@link #setData(List)}会在后台线程计算新旧数据差量，
+     * 然后在主线程精确通知插入、删除、移动和变化，而不是notifyDataSetChanged。
+     * 差量计算期间不要直接修改{@link #getList()}，新的setData会取消旧的差量计算
+     *
+     * @param diffCallback item是否相同以及内容是否相同的比较，null表示关闭差量刷新
+     */
+    public void setDiffCallback(DiffUtil.ItemCallback<T> diffCallback) {
+        mDiffCallback = diffCallback;
+    }
+
+    /**
+     * 设置差量计算和过滤的线程池，默认为共用的单线程
+     *
+     * @param executor
+     */
+    public void setDiffExecutor(Executor executor) {
+        mDiffExecutor = executor;
+    }
+
+    private void submitDiff(List<T> list) {
+        final int generation = ++mDiffGeneration;
+        final List<T> oldList = new ArrayList<>(mList);
+        final List<T> newList = new ArrayList<>(list);
+        final DiffUtil.ItemCallback<T> diffCallback = mDiffCallback;
+
+        if (oldList.isEmpty() || newList.isEmpty()) { //不需要计算差量
+            mList.clear();
+            mList.addAll(newList);
+            if (!oldList.isEmpty()) {
+                notifyItemRangeRemoved(0, oldList.size());
+            } else if (!newList.isEmpty()) {
+                notifyItemRangeInserted(0, newList.size());
+            }
+            return;
+        }
+
+        getDiffExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mDiffGeneration)
+                    return;
+
+                final DiffUtil.DiffResult result = calculateDiff(oldList, newList, diffCallback);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mDiffGeneration)
+                            return;
+
+                        if (mFilterQuery != null || mFilterSourceChanged) { //计算期间开始了过滤
+                            setFilteredData(newList);
+                            return;
+                        }
+
+                        mList.clear();
+                        mList.addAll(newList);
+                        result.dispatchUpdatesTo(BaseSimpleEasyAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    private static <T> DiffUtil.DiffResult calculateDiff(final List<T> oldList, final List<T> newList,
+                                                         final DiffUtil.ItemCallback<T> diffCallback) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return diffCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return diffCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+
+            @Override
+            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                return diffCallback.getChangePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+            }
+        });
+    }
+
+    private Executor getDiffExecutor() {
+        if (mDiffExecutor != null)
+            return mDiffExecutor;
+
+        synchronized (BaseSimpleEasyAdapter.class) {
+            if (sDefaultDiffExecutor == null) {
+                sDefaultDiffExecutor = Executors.newSingleThreadExecutor();
+            }
+            return sDefaultDiffExecutor;
+        }
+    }
+
     public ArrayList<T> getList() {
         return mList;
     }
 
+    //=========过滤=========
+
+    /**
+     * 设置过滤规则，设置后通过{@link #filter(String)}过滤数据
+     *
+     * @param filter null表示清除过滤
+     */
+    public void setFilter(ListFilter<T> filter) {
+        if (filter == null) {
+            filter(null);
+        }
+        mFilter = filter;
+    }
+
+    /**
+     * 在后台线程过滤数据，完成后在主线程按范围通知插入和删除，新的过滤会取消进行中的过滤。
+     * 过滤期间adapter位置为过滤后的位置，选中项跟随数据映射，被过滤掉的选中项在重新显示时恢复选中。
+     * 过滤期间调用{@link #setData(List)}时，结果返回前继续显示旧的过滤结果，选中项按item身份转移到新数据。
+     * 过滤期间不要直接修改{@link #getList()}，分页模式下不支持过滤
+     *
+     * @param query 为空表示清除过滤
+     */
+    public void filter(String query) {
+        if (mPagedData != null)
+            throw new IllegalStateException("filter is not supported in paged mode");
+
+        if (mFilterSignal != null) {
+            mFilterSignal.cancel();
+            mFilterSignal = null;
+        }
+
+        if (TextUtils.isEmpty(query) || query.trim().length() == 0) {
+            mFilterQuery = null;
+            if (!mFilterSourceChanged) {
+                if (mFilterPositions != null) {
+                    applyFilterResult(null, null, null);
+                }
+                mFilterSource = null;
+                return;
+            }
+            // 过滤期间设置了新数据，在后台转移选中项后再显示全部新数据
+        } else {
+            if (mFilter == null)
+                throw new IllegalStateException("filter not set, call setFilter() first");
+
+            mFilterQuery = query;
+            if (mFilterSource == null) {
+                mFilterSource = new ArrayList<>(mList);
+            }
+        }
+
+        final String filterQuery = mFilterQuery;
+        final List<T> source = mFilterSource;
+        final ListFilter<T> filter = mFilter;
+        final DiffUtil.ItemCallback<T> diffCallback = mDiffCallback;
+        //数据变化时计算新旧数据的位置映射，设置了差量比较时还和当前显示的数据计算差量
+        final List<T> oldSource = mFilterSourceChanged ? new ArrayList<>(mList) : null;
+        final List<T> oldItems = mFilterSourceChanged && diffCallback != null ? getDisplayedItems() : null;
+        final CancellationSignal signal = new CancellationSignal();
+        mFilterSignal = signal;
+        getDiffExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (signal.isCanceled())
+                    return;
+
+                final int[] result = filterQuery == null ? null : filter.filter(source, filterQuery, signal);
+                if ((filterQuery != null && result == null) || signal.isCanceled())
+                    return;
+
+                int[] sourceMapping = null;
+                DiffUtil.DiffResult diffResult = null;
+                if (oldSource != null) {
+                    sourceMapping = mapSourcePositions(oldSource, source, diffCallback);
+                }
+                if (oldItems != null) {
+                    List<T> newItems = source;
+                    if (result != null) {
+                        newItems = new ArrayList<>(result.length);
+                        for (int position : result) {
+                            newItems.add(source.get(position));
+                        }
+                    }
+                    diffResult = calculateDiff(oldItems, newItems, diffCallback);
+                }
+
+                final int[] filterSourceMapping = sourceMapping;
+                final DiffUtil.DiffResult filterDiffResult = diffResult;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (signal.isCanceled() || source != mFilterSource)
+                            return;
+
+                        mFilterSignal = null;
+                        applyFilterResult(result, filterDiffResult, filterSourceMapping);
+                        if (mFilterQuery == null) { //清除过滤期间设置了新数据
+                            mFilterSource = null;
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 获取当前过滤的查询
+     *
+     * @return 未过滤时返回null
+     */
+    public String getFilterQuery() {
+        return mFilterQuery;
+    }
+
+    /**
+     * 获取adapter位置对应的数据位置，即在{@link #getList()}中的位置
+     *
+     * @param position
+     * @return
+     */
+    public int getSourcePosition(int position) {
+        return mFilterPositions == null ? position : mFilterPositions[position];
+    }
+
+    /**
+     * 过滤期间设置数据，新数据只作为过滤的数据源，结果返回前继续显示旧的过滤结果
+     */
+    private void setFilteredData(List<T> list) {
+        mDiffGeneration++; //取消进行中的差量计算
+        mFilterSource = new ArrayList<>(list);
+        mFilterSourceChanged = true;
+        filter(mFilterQuery);
+    }
+
+    private List<T> getDisplayedItems() {
+        final int count = getItemCount();
+        final List<T> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(getItem(i));
+        }
+        return items;
+    }
+
+    private void resetFilter() {
+        if (mFilterSignal != null) {
+            mFilterSignal.cancel();
+            mFilterSignal = null;
+        }
+        mFilterQuery = null;
+        mFilterSource = null;
+        mFilterSourceChanged = false;
+        mFilterPositions = null;
+        mHiddenSelected = EMPTY_POSITIONS;
+        mHiddenSingleSelected = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @param diffResult    过滤期间设置了新数据时，新旧显示数据的差量，为null时整体刷新
+     * @param sourceMapping 过滤期间设置了新数据时，旧数据每个位置在新数据中的位置
+     */
+    private void applyFilterResult(int[] newPositions, DiffUtil.DiffResult diffResult, int[] sourceMapping) {
+        final int[] oldPositions = mFilterPositions;
+        final int oldCount = getItemCount();
+        int[] selected = collectSelectedSourcePositions(oldPositions, oldCount);
+        int singleSelected = getSelectMode() == SelectMode.SINGLE_SELECT
+                ? toSourcePosition(oldPositions, oldCount, getSingleSelected(), mHiddenSingleSelected)
+                : RecyclerView.NO_POSITION;
+
+        if (mFilterSourceChanged) { //替换为新数据，选中项按item身份转移
+            mFilterSourceChanged = false;
+            selected = remapSourcePositions(selected, sourceMapping);
+            if (singleSelected != RecyclerView.NO_POSITION) {
+                singleSelected = sourceMapping[singleSelected];
+            }
+            mList.clear();
+            mList.addAll(mFilterSource);
+            mFilterPositions = newPositions;
+            if (diffResult != null) {
+                diffResult.dispatchUpdatesTo(this);
+            } else {
+                notifyDataSetChanged();
+            }
+        } else {
+            mFilterPositions = newPositions;
+            ListFilter.dispatchUpdates(oldPositions, oldCount, newPositions, getItemCount(),
+                    new AdapterListUpdateCallback(this));
+        }
+
+        restoreSelectedSourcePositions(selected);
+        if (getSelectMode() == SelectMode.SINGLE_SELECT) {
+            final int position = toAdapterPosition(singleSelected);
+            mHiddenSingleSelected = position == RecyclerView.NO_POSITION ? singleSelected : RecyclerView.NO_POSITION;
+            setSingleSelected(position);
+        }
+    }
+
+    /**
+     * 收集选中项的数据位置，包括被过滤掉的选中项，顺序按照选择顺序
+     */
+    private int[] collectSelectedSourcePositions(int[] positions, int count) {
+        final int[] visible = getSelectionStore().toArray();
+        final int[] result = Arrays.copyOf(visible, visible.length + mHiddenSelected.length);
+        int size = 0;
+        for (int position : visible) {
+            if (position < count) {
+                result[size++] = positions == null ? position : positions[position];
+            }
+        }
+        System.arraycopy(mHiddenSelected, 0, result, size, mHiddenSelected.length);
+        return Arrays.copyOf(result, size + mHiddenSelected.length);
+    }
+
+    /**
+     * 按照新的过滤结果恢复选中项，不会回调选择监听，不在过滤结果中的选中项暂存起来
+     */
+    private void restoreSelectedSourcePositions(int[] sourcePositions) {
+        final SelectionStore store = getSelectionStore();
+        if (sourcePositions.length == 0 && store.size() == 0)
+            return;
+
+        store.clear();
+        final int[] hidden = new int[sourcePositions.length];
+        int hiddenCount = 0;
+        for (int sourcePosition : sourcePositions) {
+            final int position = toAdapterPosition(sourcePosition);
+            if (position == RecyclerView.NO_POSITION) {
+                hidden[hiddenCount++] = sourcePosition;
+            } else {
+                store.add(position);
+            }
+        }
+        mHiddenSelected = hiddenCount == 0 ? EMPTY_POSITIONS : Arrays.copyOf(hidden, hiddenCount);
+    }
+
+    /**
+     * 按item身份计算旧数据每个位置在新数据中的位置，在后台线程调用。
+     * 设置了差量比较时通过新旧数据的差量按areItemsTheSame映射，否则按equals映射
+     *
+     * @return 已不在新数据中的位置为{@link RecyclerView#NO_POSITION}
+     */
+    private static <T> int[] mapSourcePositions(List<T> oldSource, List<T> newSource, DiffUtil.ItemCallback<T> diffCallback) {
+        final int[] mapping = new int[oldSource.size()];
+        if (diffCallback != null) {
+            final DiffUtil.DiffResult result = calculateDiff(oldSource, newSource, diffCallback);
+            for (int i = 0; i < mapping.length; i++) {
+                mapping[i] = result.convertOldPositionToNewPosition(i);
+            }
+            return mapping;
+        }
+
+        final HashMap<T, Integer> index = new HashMap<>();
+        for (int i = newSource.size() - 1; i >= 0; i--) { //相同的item取第一个
+            index.put(newSource.get(i), i);
+        }
+        for (int i = 0; i < mapping.length; i++) {
+            final Integer position = index.get(oldSource.get(i));
+            mapping[i] = position == null ? RecyclerView.NO_POSITION : position;
+        }
+        return mapping;
+    }
+
+    /**
+     * 按位置映射转换选中项的数据位置，结果保持原有顺序，已不在新数据中的位置被丢弃
+     */
+    private static int[] remapSourcePositions(int[] sourcePositions, int[] sourceMapping) {
+        final int[] mapped = new int[sourcePositions.length];
+        int size = 0;
+        for (int sourcePosition : sourcePositions) {
+            final int position = sourceMapping[sourcePosition];
+            if (position != RecyclerView.NO_POSITION) {
+                mapped[size++] = position;
+            }
+        }
+        return size == mapped.length ? mapped : Arrays.copyOf(mapped, size);
+    }
+
+    private static int toSourcePosition(int[] positions, int count, int position, int hiddenPosition) {
+        if (position < 0 || position >= count)
+            return hiddenPosition;
+
+        return positions == null ? position : positions[position];
+    }
+
+    private int toAdapterPosition(int sourcePosition) {
+        if (sourcePosition < 0)
+            return RecyclerView.NO_POSITION;
+
+        if (mFilterPositions == null)
+            return sourcePosition < mList.size() ? sourcePosition : RecyclerView.NO_POSITION;
+
+        final int index = Arrays.binarySearch(mFilterPositions, sourcePosition);
+        return index >= 0 ? index : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * 在主线程空闲时提前创建ViewHolder放入缓存池
+     *
+     * @param recyclerView 真实的父布局
+     * @param count        创建个数
+     */
+    public void prewarmViewHolders(RecyclerView recyclerView, int count) {
+        prewarmViewHolders(recyclerView, getSimpleViewType(), count);
+    }
+
     protected abstract int getLayoutId();
 }
@@ -1,26 +1,75 @@
 package com.zhy.base;
 
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
 import android.text.TextUtils;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * 文件上传类
  */
 public abstract class BaseSingleUploader {
+    private static Executor sPrepareExecutor;
+
     private final AppCompatActivity mContext;
 
     private final List<String> mListPath = new ArrayList<>();
     private final List<String> mListUploaded = new ArrayList<>();
-    private boolean mUploading;
+    private volatile boolean mUploading;
     private Callback mCallback;
+    /**
+     * 当前文件的取消信号，同时标识当前的上传请求
+     */
+    private volatile CancellationSignal mCancellationSignal;
+    private boolean mCancelOnDestroy;
+    private final LifecycleObserver mLifecycleObserver = new LifecycleObserver() {
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            setCancelOnDestroy(false);
+            cancel();
+        }
+    };
+    private UploadDedupCache mDedupCache;
+    /**
+     * 当前文件的内容哈希，未开启去重或计算失败时为null
+     */
+    private String mCurrentHash;
+    private int mBatchId;
+
+    private boolean mPipelineEnabled;
+    private boolean mAsyncValidation;
+    /**
+     * 本批次文件已经过异步校验
+     */
+    private boolean mValidated;
+    /**
+     * 已准备好等待上传的下一个文件
+     */
+    private PreparedFile mPrepared;
+    private boolean mPreparing;
+    /**
+     * 当前没有文件在上传，准备完成后立即开始
+     */
+    private boolean mWaitingPrepared;
+    /**
+     * 本批次已上传文件的内容哈希到结果的映射，用于批次内去重
+     */
+    private final Map<String, String> mBatchResults = new HashMap<>();
 
     public BaseSingleUploader(AppCompatActivity context) {
         mContext = context;
@@ -39,6 +88,52 @@ public abstract class BaseSingleUploader {
         return mContext;
     }
 
+    /**
+     * 设置是否在页面销毁时自动取消上传，见{@link #cancel()}
+     *
+     * @param cancelOnDestroy
+     */
+    public final void setCancelOnDestroy(boolean cancelOnDestroy) {
+        if (cancelOnDestroy == mCancelOnDestroy)
+            return;
+
+        mCancelOnDestroy = cancelOnDestroy;
+        if (cancelOnDestroy) {
+            mContext.getLifecycle().addObserver(mLifecycleObserver);
+        } else {
+            mContext.getLifecycle().removeObserver(mLifecycleObserver);
+        }
+    }
+
+    /**
+     * 设置上传去重缓存，上传前在后台计算文件内容哈希，缓存中有结果时不再上传
+     *
+     * @param dedupCache 为null时关闭去重
+     */
+    public final void setDedupCache(UploadDedupCache dedupCache) {
+        mDedupCache = dedupCache;
+    }
+
+    /**
+     * 设置是否开启流水线模式，开启后上传当前文件的同时在后台校验、计算哈希并预处理下一个文件，
+     * 上传顺序和结果顺序不变，文件校验失败时回调onError
+     *
+     * @param pipelineEnabled
+     */
+    public final void setPipelineEnabled(boolean pipelineEnabled) {
+        mPipelineEnabled = pipelineEnabled;
+    }
+
+    /**
+     * 设置是否异步校验文件，开启后在线程池中并行校验全部文件，不会阻塞调用线程，
+     * 有文件不存在时不上传任何文件，回调{@link OnInvalidFilesListener}后回调onError，而不是抛出异常
+     *
+     * @param asyncValidation
+     */
+    public final void setAsyncValidation(boolean asyncValidation) {
+        mAsyncValidation = asyncValidation;
+    }
+
     /**
      * 上传文件
      *
@@ -65,41 +160,338 @@ public abstract class BaseSingleUploader {
             return false;
 
         mUploading = true;
+        mBatchId++;
         mListPath.clear();
         mListPath.addAll(listPath);
         mListUploaded.clear();
+        synchronized (mBatchResults) {
+            mBatchResults.clear();
+        }
+        mPrepared = null;
+        mPreparing = false;
+        mValidated = false;
 
-        final String path = mListPath.remove(0);
-        uploadFileInternal(path);
+        if (mAsyncValidation) {
+            validateAsync(new ArrayList<>(listPath));
+        } else {
+            startBatch();
+        }
         return true;
     }
 
-    private void uploadFileInternal(String path) {
-        if (TextUtils.isEmpty(path))
-            throw new IllegalArgumentException("path is empty");
+    /**
+     * 取消上传，当前文件通过{@link #getCancellationSignal()}中止，其余文件不再上传。
+     * 取消后不会回调onSuccess或onError，调用方需要自己处理取消后的界面状态，
+     * 取消前的请求之后再通知结果时会被忽略，不会计入下一批次
+     */
+    public final void cancel() {
+        if (!mUploading)
+            return;
+
+        mUploading = false;
+        mBatchId++;
+        mListPath.clear();
+        mPrepared = null;
+        mPreparing = false;
+        mWaitingPrepared = false;
+        mCurrentHash = null;
+        final CancellationSignal signal = mCancellationSignal;
+        mCancellationSignal = null;
+        if (signal != null) {
+            signal.cancel();
+        }
+    }
+
+    /**
+     * 当前文件的取消信号，在{@link #onUploadImpl(String)}中获取，取消后应尽快中止请求。
+     * 同时标识本次请求，通知结果时传入{@link #notifyUploadSuccess(CancellationSignal, String)}，
+     * 取消或重新上传后之前的请求不会被当作当前文件的结果
+     *
+     * @return
+     */
+    protected final CancellationSignal getCancellationSignal() {
+        return mCancellationSignal;
+    }
+
+    /**
+     * 在线程池中校验全部文件，全部有效时开始上传
+     */
+    private void validateAsync(List<String> paths) {
+        final int batchId = mBatchId;
+        FileValidator.validate(paths, new FileValidator.Listener() {
+            @Override
+            public void onValidated(long[] sizes, List<String> invalidPaths) {
+                if (batchId != mBatchId || !mUploading)
+                    return;
+
+                if (invalidPaths.isEmpty()) {
+                    mValidated = true;
+                    startBatch();
+                    return;
+                }
+
+                if (mCallback instanceof OnInvalidFilesListener) {
+                    ((OnInvalidFilesListener) mCallback).onInvalidFiles(invalidPaths);
+                }
+                notifyCallbackError("file not exists:" + invalidPaths.get(0));
+            }
+        });
+    }
+
+    private void startBatch() {
+        if (mPipelineEnabled) {
+            mWaitingPrepared = true;
+            prepareNext();
+        } else {
+            final String path = mListPath.remove(0);
+            uploadFileInternal(path);
+        }
+    }
 
+    private void uploadFileInternal(String path) {
         final File file = new File(path);
-        if (!file.exists())
-            throw new IllegalArgumentException("file not exists:" + path);
+        if (!mValidated) {
+            if (TextUtils.isEmpty(path))
+                throw new IllegalArgumentException("path is empty");
+
+            if (!file.exists())
+                throw new IllegalArgumentException("file not exists:" + path);
+        }
+
+        mCurrentHash = null;
+        if (mDedupCache == null) {
+            mCancellationSignal = new CancellationSignal();
+            onUploadImpl(path);
+        } else {
+            lookupDedupCache(mDedupCache, file);
+        }
+    }
 
-        onUploadImpl(path);
+    /**
+     * 在后台计算哈希并查找缓存，命中时直接通知成功，否则在主线程开始上传
+     */
+    private void lookupDedupCache(final UploadDedupCache dedupCache, final File file) {
+        final int batchId = mBatchId;
+        dedupCache.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String hash;
+                try {
+                    hash = UploadDedupCache.hash(file);
+                } catch (IOException e) {
+                    hash = null; //无法计算时直接上传
+                }
+                final String hashResult = hash;
+                final String cached = hash != null ? dedupCache.get(hash) : null;
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (batchId != mBatchId || !mUploading)
+                            return;
+
+                        if (cached != null) {
+                            onFileUploaded(cached);
+                        } else {
+                            mCurrentHash = hashResult;
+                            mCancellationSignal = new CancellationSignal();
+                            onUploadImpl(file.getPath());
+                        }
+                    }
+                });
+            }
+        });
     }
 
     /**
      * 子类上传实现，上传结果需要通知{@link #notifyUploadSuccess(String)}或者{@link #notifyUploadError(String)}
      *
-     * @param path
+     * @param path 流水线模式下为{@link #onPrepare(String)}返回的路径
      */
     protected abstract void onUploadImpl(String path);
 
     /**
-     * 通知本次上传成功
+     * 流水线模式下在后台线程预处理文件，例如压缩图片，在上一个文件上传期间执行
+     *
+     * @param path 原文件路径
+     * @return 实际上传的文件路径，默认为原文件
+     * @throws IOException 预处理失败时回调onError
+     */
+    protected String onPrepare(String path) throws IOException {
+        return path;
+    }
+
+    //=========流水线=========
+
+    /**
+     * 在后台准备下一个文件，同时只准备一个
+     */
+    private void prepareNext() {
+        if (mListPath.isEmpty())
+            return;
+
+        final String path = mListPath.remove(0);
+        final int batchId = mBatchId;
+        final UploadDedupCache dedupCache = mDedupCache;
+        mPreparing = true;
+        getPrepareExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final PreparedFile prepared = prepare(path, dedupCache);
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (batchId != mBatchId || !mUploading)
+                            return;
+
+                        mPreparing = false;
+                        if (mWaitingPrepared) {
+                            mWaitingPrepared = false;
+                            startPrepared(prepared);
+                        } else {
+                            mPrepared = prepared;
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 校验、计算哈希并查找缓存，未命中时预处理，在后台线程执行
+     */
+    private PreparedFile prepare(String path, UploadDedupCache dedupCache) {
+        final PreparedFile prepared = new PreparedFile();
+        if (TextUtils.isEmpty(path)) {
+            prepared.error = "path is empty";
+            return prepared;
+        }
+
+        final File file = new File(path);
+        if (!file.exists()) {
+            prepared.error = "file not exists:" + path;
+            return prepared;
+        }
+
+        try {
+            if (dedupCache != null) {
+                prepared.hash = UploadDedupCache.hash(file);
+                prepared.cached = dedupCache.get(prepared.hash);
+                if (prepared.cached != null)
+                    return prepared;
+            }
+            prepared.uploadPath = onPrepare(path);
+        } catch (IOException e) {
+            prepared.error = e.getMessage();
+        }
+        return prepared;
+    }
+
+    /**
+     * 开始上传已准备好的文件，同时准备下一个文件，在主线程调用
+     */
+    private void startPrepared(PreparedFile prepared) {
+        if (prepared.error != null) {
+            notifyCallbackError(prepared.error);
+            return;
+        }
+
+        String cached = prepared.cached;
+        if (cached == null && prepared.hash != null) {
+            synchronized (mBatchResults) {
+                cached = mBatchResults.get(prepared.hash);
+            }
+        }
+
+        prepareNext();
+        if (cached != null) {
+            mCurrentHash = null;
+            onFileUploaded(cached);
+        } else {
+            mCurrentHash = prepared.hash;
+            mCancellationSignal = new CancellationSignal();
+            onUploadImpl(prepared.uploadPath);
+        }
+    }
+
+    /**
+     * 流水线模式下上传下一个文件，在主线程调用
+     */
+    private void uploadNextPrepared() {
+        if (!mUploading)
+            return;
+
+        if (mPrepared != null) {
+            final PreparedFile prepared = mPrepared;
+            mPrepared = null;
+            startPrepared(prepared);
+        } else if (mPreparing) {
+            mWaitingPrepared = true;
+        } else {
+            notifyCallbackSuccess(new ArrayList<String>(mListUploaded));
+        }
+    }
+
+    private static Executor getPrepareExecutor() {
+        synchronized (BaseSingleUploader.class) {
+            if (sPrepareExecutor == null) {
+                sPrepareExecutor = Executors.newSingleThreadExecutor();
+            }
+            return sPrepareExecutor;
+        }
+    }
+
+    /**
+     * 通知本次上传成功，只能区分当前的请求，取消后会重新上传时使用{@link #notifyUploadSuccess(CancellationSignal, String)}
      *
      * @param result
      */
     protected final void notifyUploadSuccess(String result) {
+        notifyUploadSuccess(mCancellationSignal, result);
+    }
+
+    /**
+     * 通知请求上传成功，可以在任意线程调用，在主线程处理，已取消或不是当前的请求时忽略
+     *
+     * @param request {@link #getCancellationSignal()}
+     * @param result
+     */
+    protected final void notifyUploadSuccess(final CancellationSignal request, final String result) {
+        if (Looper.getMainLooper() != Looper.myLooper()) {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyUploadSuccess(request, result);
+                }
+            });
+            return;
+        }
+
+        if (!mUploading || request == null || request != mCancellationSignal)
+            return;
+
+        mCancellationSignal = null;
+        onFileUploaded(result);
+    }
+
+    /**
+     * 当前文件上传成功，开始下一个文件，在主线程调用
+     */
+    private void onFileUploaded(String result) {
+        final UploadDedupCache dedupCache = mDedupCache;
+        final String hash = mCurrentHash;
+        if (dedupCache != null && hash != null && result != null) {
+            mCurrentHash = null;
+            dedupCache.putAsync(hash, result);
+            if (mPipelineEnabled) {
+                synchronized (mBatchResults) {
+                    mBatchResults.put(hash, result);
+                }
+            }
+        }
         mListUploaded.add(result);
-        if (mListPath.isEmpty()) {
+        if (mPipelineEnabled) {
+            uploadNextPrepared();
+        } else if (mListPath.isEmpty()) {
             notifyCallbackSuccess(new ArrayList<String>(mListUploaded));
         } else {
             final String path = mListPath.remove(0);
@@ -108,15 +500,42 @@ public abstract class BaseSingleUploader {
     }
 
     /**
-     * 通知本次上传失败
+     * 通知本次上传失败，只能区分当前的请求，取消后会重新上传时使用{@link #notifyUploadError(CancellationSignal, String)}
      *
      * @param msg
      */
     protected final void notifyUploadError(final String msg) {
+        notifyUploadError(mCancellationSignal, msg);
+    }
+
+    /**
+     * 通知请求上传失败，可以在任意线程调用，在主线程处理，已取消或不是当前的请求时忽略
+     *
+     * @param request {@link #getCancellationSignal()}
+     * @param msg
+     */
+    protected final void notifyUploadError(final CancellationSignal request, final String msg) {
+        if (Looper.getMainLooper() != Looper.myLooper()) {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyUploadError(request, msg);
+                }
+            });
+            return;
+        }
+
+        if (!mUploading || request == null || request != mCancellationSignal)
+            return;
+
+        mCancellationSignal = null;
         notifyCallbackError(msg);
     }
 
     private void notifyCallbackSuccess(final List<String> listResult) {
+        if (!mUploading) //已取消
+            return;
+
         if (Looper.getMainLooper() == Looper.myLooper()) {
             mUploading = false;
             mCallback.onSuccess(listResult);
@@ -131,6 +550,9 @@ public abstract class BaseSingleUploader {
     }
 
     private final void notifyCallbackError(final String msg) {
+        if (!mUploading) //已取消
+            return;
+
         if (Looper.getMainLooper() == Looper.myLooper()) {
             mUploading = false;
             mCallback.onError(msg);
@@ -159,4 +581,11 @@ public abstract class BaseSingleUploader {
          */
         void onError(String msg);
     }
+
+    private static final class PreparedFile {
+        String uploadPath;
+        String hash;
+        String cached;
+        String error;
+    }
 }
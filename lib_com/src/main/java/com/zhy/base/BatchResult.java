@@ -0,0 +1,93 @@
+package com.zhy.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一批文件的上传结果，分为成功、失败和未上传，只需要重新上传失败和未上传的文件
+ */
+public final class BatchResult {
+    private final List<FileResult> mSucceeded;
+    private final List<FileResult> mFailed;
+    private final List<FileResult> mSkipped;
+
+    BatchResult(List<FileResult> succeeded, List<FileResult> failed, List<FileResult> skipped) {
+        mSucceeded = Collections.unmodifiableList(succeeded);
+        mFailed = Collections.unmodifiableList(failed);
+        mSkipped = Collections.unmodifiableList(skipped);
+    }
+
+    public List<FileResult> getSucceeded() {
+        return mSucceeded;
+    }
+
+    public List<FileResult> getFailed() {
+        return mFailed;
+    }
+
+    /**
+     * 批次中止时还未开始上传的文件
+     *
+     * @return
+     */
+    public List<FileResult> getSkipped() {
+        return mSkipped;
+    }
+
+    public boolean isAllSucceeded() {
+        return mFailed.isEmpty() && mSkipped.isEmpty();
+    }
+
+    /**
+     * 获取需要重新上传的文件路径，包括失败和未上传的文件
+     *
+     * @return
+     */
+    public List<String> getRetryPaths() {
+        final List<String> paths = new ArrayList<>(mFailed.size() + mSkipped.size());
+        for (FileResult result : mFailed) {
+            paths.add(result.path);
+        }
+        for (FileResult result : mSkipped) {
+            paths.add(result.path);
+        }
+        return paths;
+    }
+
+    /**
+     * 单个文件的上传结果
+     */
+    public static final class FileResult {
+        /**
+         * 文件在传入列表中的位置
+         */
+        public final int tag;
+        public final String path;
+        /**
+         * 上传成功的结果，失败时为null，{@link BaseMultiUploader#setKeepResults(boolean)}关闭后批次结果中为null
+         */
+        public final String result;
+        /**
+         * 最后一次失败的错误消息，成功时为null
+         */
+        public final String error;
+        /**
+         * 尝试上传的次数
+         */
+        public final int attempts;
+        /**
+         * 从第一次开始上传到结束的毫秒数，包括重试等待，命中去重缓存或未上传时为0
+         */
+        public final long durationMillis;
+
+        FileResult(int tag, String path, String result, String error, int attempts, long durationMillis) {
+            this.tag = tag;
+            this.path = path;
+            this.result = result;
+            this.error = error;
+            this.attempts = attempts;
+            this.durationMillis = durationMillis;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.zhy.base;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 可复用的ByteBuffer池，多个上传同时进行时不需要为每次读写分配缓冲区。
+ * 池中最多保留指定个数，超出时归还的缓冲区交给GC回收
+ */
+public final class ByteBufferPool {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_POOLED = 8;
+
+    private static ByteBufferPool sDefault;
+    private static ByteBufferPool sDefaultDirect;
+
+    private final int mBufferSize;
+    private final int mMaxPooled;
+    private final boolean mDirect;
+    private final ArrayDeque<ByteBuffer> mBuffers = new ArrayDeque<>();
+
+    /**
+     * @param bufferSize 每个缓冲区的字节数
+     * @param maxPooled  最多保留的缓冲区个数
+     * @param direct     是否使用直接内存，读写Channel时可以减少一次复制，但没有byte[]
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize <= 0:" + bufferSize);
+
+        mBufferSize = bufferSize;
+        mMaxPooled = maxPooled;
+        mDirect = direct;
+    }
+
+    /**
+     * 共用的堆内存缓冲池，缓冲区可以通过array()访问
+     *
+     * @return
+     */
+    public static ByteBufferPool getDefault() {
+        synchronized (ByteBufferPool.class) {
+            if (sDefault == null) {
+                sDefault = new ByteBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, false);
+            }
+            return sDefault;
+        }
+    }
+
+    /**
+     * 共用的直接内存缓冲池
+     *
+     * @return
+     */
+    public static ByteBufferPool getDefaultDirect() {
+        synchronized (ByteBufferPool.class) {
+            if (sDefaultDirect == null) {
+                sDefaultDirect = new ByteBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, true);
+            }
+            return sDefaultDirect;
+        }
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * 取出一个已清空的缓冲区，用完后需要{@link #release(ByteBuffer)}
+     *
+     * @return
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (mBuffers) {
+            buffer = mBuffers.pollFirst();
+        }
+        if (buffer == null) {
+            buffer = mDirect ? ByteBuffer.allocateDirect(mBufferSize) : ByteBuffer.allocate(mBufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，归还后不能再使用
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != mBufferSize || buffer.isDirect() != mDirect)
+            return;
+
+        synchronized (mBuffers) {
+            if (mBuffers.size() < mMaxPooled) {
+                mBuffers.addLast(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.zhy.base;
+
+import android.os.CancellationSignal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 分块断点续传，文件按块上传，每块被服务端确认后记录偏移，
+ * 失败重试或进程重启后从最后确认的偏移继续上传。
+ * 在{@link BaseSingleUploader}或{@link BaseMultiUploader.UploadProxy}的onUploadImpl中调用{@link #enqueue}，
+ * 在回调中通知上传结果
+ */
+public class ChunkedUpload {
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private static Executor sDefaultExecutor;
+
+    private final UploadJournal mJournal;
+    private final ByteBufferPool mBufferPool;
+    private Executor mExecutor;
+
+    /**
+     * @param journalFile 断点记录文件，例如context.getFilesDir()下的文件
+     */
+    public ChunkedUpload(File journalFile) {
+        this(journalFile, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param journalFile 断点记录文件，例如context.getFilesDir()下的文件
+     * @param chunkSize   每块的字节数
+     */
+    public ChunkedUpload(File journalFile, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize <= 0:" + chunkSize);
+
+        mJournal = new UploadJournal(journalFile);
+        mBufferPool = new ByteBufferPool(chunkSize, ByteBufferPool.DEFAULT_MAX_POOLED, false);
+    }
+
+    /**
+     * 设置上传线程池，默认为共用的线程池
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 在线程池中上传文件
+     *
+     * @param path
+     * @param sender
+     * @param callback 在上传线程回调
+     */
+    public void enqueue(String path, ChunkSender sender, Callback callback) {
+        enqueue(path, sender, callback, null);
+    }
+
+    /**
+     * 在线程池中上传文件，取消后不再上传下一块，已确认的块保留在断点记录中
+     *
+     * @param path
+     * @param sender
+     * @param callback 在上传线程回调
+     * @param signal   取消信号，可以为null
+     */
+    public void enqueue(final String path, final ChunkSender sender, final Callback callback, final CancellationSignal signal) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final String result;
+                try {
+                    result = upload(path, sender, callback, signal);
+                } catch (IOException e) {
+                    callback.onError(e.getMessage());
+                    return;
+                }
+                callback.onSuccess(result);
+            }
+        });
+    }
+
+    /**
+     * 上传文件，阻塞直到上传完成，需要在后台线程调用。
+     * 同一个文件之前中断过时使用原来的会话从记录的偏移继续上传，文件被修改过时重新上传
+     *
+     * @param path
+     * @param sender
+     * @param listener 进度监听，可以为null
+     * @return {@link ChunkSender#complete}返回的结果
+     * @throws IOException 读取文件或上传失败，已确认的块不需要重新上传
+     */
+    public String upload(String path, ChunkSender sender, ProgressListener listener) throws IOException {
+        return upload(path, sender, listener, null);
+    }
+
+    /**
+     * 上传文件，阻塞直到上传完成或取消，需要在后台线程调用
+     *
+     * @param path
+     * @param sender
+     * @param listener 进度监听，可以为null
+     * @param signal   取消信号，可以为null，取消后在下一块开始前抛出InterruptedIOException
+     * @return {@link ChunkSender#complete}返回的结果
+     * @throws IOException 读取文件、上传失败或已取消，已确认的块不需要重新上传
+     */
+    public String upload(String path, ChunkSender sender, ProgressListener listener, CancellationSignal signal) throws IOException {
+        checkCanceled(signal, path);
+        final File file = new File(path);
+        final long total = file.length();
+        final String key = getKey(file);
+
+        final String session;
+        long offset;
+        final UploadJournal.Entry entry = mJournal.get(key);
+        if (entry == null) {
+            session = sender.begin(path, total);
+            offset = 0;
+            mJournal.put(key, session, offset);
+        } else {
+            session = entry.session;
+            offset = entry.offset;
+        }
+
+        if (listener != null && offset > 0) {
+            listener.onProgress(offset, total);
+        }
+
+        final FileInputStream in = new FileInputStream(file);
+        final ByteBuffer buffer = mBufferPool.acquire();
+        try {
+            final FileChannel channel = in.getChannel();
+            while (offset < total) {
+                checkCanceled(signal, path);
+                final int length = (int) Math.min(buffer.capacity(), total - offset);
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) == -1)
+                        throw new IOException("unexpected end of file:" + path);
+                }
+                sender.sendChunk(session, buffer.array(), length, offset, total);
+                offset += length;
+                mJournal.put(key, session, offset);
+                if (listener != null) {
+                    listener.onProgress(offset, total);
+                }
+            }
+        } finally {
+            mBufferPool.release(buffer);
+            UploadJournal.closeQuietly(in);
+        }
+
+        final String result = sender.complete(session, total);
+        mJournal.remove(key);
+        return result;
+    }
+
+    /**
+     * 丢弃文件的断点记录，下次从头上传，例如服务端会话已过期
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void discard(String path) throws IOException {
+        mJournal.remove(getKey(new File(path)));
+    }
+
+    private static void checkCanceled(CancellationSignal signal, String path) throws InterruptedIOException {
+        if (signal != null && signal.isCanceled())
+            throw new InterruptedIOException("upload canceled:" + path);
+    }
+
+    private Executor getExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+
+        synchronized (ChunkedUpload.class) {
+            if (sDefaultExecutor == null) {
+                sDefaultExecutor = Executors.newCachedThreadPool();
+            }
+            return sDefaultExecutor;
+        }
+    }
+
+    /**
+     * 文件路径、大小和修改时间都相同时认为是同一个文件
+     */
+    private static String getKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    /**
+     * 分块上传的网络实现，在上传线程调用，失败时抛出IOException
+     */
+    public interface ChunkSender {
+        /**
+         * 开始上传会话
+         *
+         * @param path
+         * @param totalLength 文件总字节数
+         * @return 会话id，续传时传回
+         * @throws IOException
+         */
+        String begin(String path, long totalLength) throws IOException;
+
+        /**
+         * 上传一块，服务端确认后返回
+         *
+         * @param session
+         * @param buffer      数据从0开始，返回后会被复用，不能保留引用
+         * @param length      本块字节数
+         * @param offset      本块在文件中的偏移
+         * @param totalLength 文件总字节数
+         * @throws IOException
+         */
+        void sendChunk(String session, byte[] buffer, int length, long offset, long totalLength) throws IOException;
+
+        /**
+         * 全部块上传完成
+         *
+         * @param session
+         * @param totalLength
+         * @return 上传结果
+         * @throws IOException
+         */
+        String complete(String session, long totalLength) throws IOException;
+    }
+
+    public interface ProgressListener {
+        void onProgress(long bytesWrite, long contentLength);
+    }
+
+    public interface Callback extends ProgressListener {
+        void onSuccess(String result);
+
+        void onError(String msg);
+    }
+}
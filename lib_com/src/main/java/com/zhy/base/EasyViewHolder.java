@@ -0,0 +1,15 @@
+package com.zhy.base;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要生成{@link ViewHolderFactory}的ViewHolder，ViewHolder需要有一个非private的(View)构造方法。
+ * 引入lib_com_compiler注解处理器后会在同一个包下生成"类名_Factory"，嵌套类的类名以"_"连接
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface EasyViewHolder {
+}
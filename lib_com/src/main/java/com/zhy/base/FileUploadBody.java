@@ -0,0 +1,182 @@
+package com.zhy.base;
+
+import android.os.CancellationSignal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 上传文件的数据源，从FileChannel流式读取并统计已写入的字节数。
+ * 写入Channel时使用transferTo，目标为Socket或文件时由内核直接复制；
+ * 写入OutputStream时使用{@link ByteBufferPool}中的缓冲区，不会为每次读写分配内存
+ */
+public class FileUploadBody {
+    public static final long DEFAULT_PROGRESS_GRANULARITY = 256 * 1024;
+
+    private final File mFile;
+    private ChunkedUpload.ProgressListener mProgressListener;
+    private long mProgressGranularity = DEFAULT_PROGRESS_GRANULARITY;
+    private ByteBufferPool mBufferPool = ByteBufferPool.getDefault();
+    private CancellationSignal mCancellationSignal;
+
+    public FileUploadBody(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public long contentLength() {
+        return mFile.length();
+    }
+
+    /**
+     * 设置进度监听
+     *
+     * @param listener    在写入线程回调
+     * @param granularity 每写入多少字节回调一次，写完时一定回调
+     */
+    public void setProgressListener(ChunkedUpload.ProgressListener listener, long granularity) {
+        if (granularity <= 0)
+            throw new IllegalArgumentException("granularity <= 0:" + granularity);
+
+        mProgressListener = listener;
+        mProgressGranularity = granularity;
+    }
+
+    /**
+     * 设置写入OutputStream时使用的缓冲池，默认为{@link ByteBufferPool#getDefault()}
+     *
+     * @param bufferPool
+     */
+    public void setBufferPool(ByteBufferPool bufferPool) {
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * 设置取消信号，取消后在下一次读写前抛出InterruptedIOException
+     *
+     * @param signal 例如{@link BaseMultiUploader.UploadProxy#getCancellationSignal()}
+     */
+    public void setCancellationSignal(CancellationSignal signal) {
+        mCancellationSignal = signal;
+    }
+
+    /**
+     * 写入Channel，每次最多传输一个进度粒度的字节数
+     *
+     * @param target
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel target) throws IOException {
+        final FileInputStream in = new FileInputStream(mFile);
+        try {
+            final FileChannel channel = in.getChannel();
+            final long total = channel.size();
+            long position = 0;
+            while (position < total) {
+                checkCanceled();
+                final long count = channel.transferTo(position, Math.min(mProgressGranularity, total - position), target);
+                if (count <= 0) { //目标暂时无法写入，改为通过缓冲区写入剩余部分
+                    copyWithBuffer(channel, position, total, target);
+                    return;
+                }
+                position += count;
+                notifyProgress(position, total);
+            }
+        } finally {
+            UploadJournal.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 写入OutputStream，目标为文件时使用transferTo
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream) {
+            writeTo(((FileOutputStream) out).getChannel());
+            return;
+        }
+
+        final FileInputStream in = new FileInputStream(mFile);
+        try {
+            final FileChannel channel = in.getChannel();
+            final long total = channel.size();
+            final ByteBuffer buffer = mBufferPool.acquire();
+            if (!buffer.hasArray()) { //直接内存没有byte[]，通过Channel写入
+                mBufferPool.release(buffer);
+                copyWithBuffer(channel, 0, total, Channels.newChannel(out));
+                return;
+            }
+
+            try {
+                long position = 0;
+                long reported = 0;
+                int read;
+                while ((read = channel.read(buffer)) != -1) {
+                    checkCanceled();
+                    out.write(buffer.array(), buffer.arrayOffset(), read);
+                    buffer.clear();
+                    position += read;
+                    if (position - reported >= mProgressGranularity || position >= total) {
+                        reported = position;
+                        notifyProgress(position, total);
+                    }
+                }
+            } finally {
+                mBufferPool.release(buffer);
+            }
+        } finally {
+            UploadJournal.closeQuietly(in);
+        }
+    }
+
+    private void copyWithBuffer(FileChannel channel, long position, long total, WritableByteChannel target) throws IOException {
+        final ByteBuffer buffer = mBufferPool.acquire();
+        try {
+            long reported = position;
+            while (position < total) {
+                checkCanceled();
+                buffer.clear();
+                final int read = channel.read(buffer, position);
+                if (read == -1)
+                    break;
+
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                position += read;
+                if (position - reported >= mProgressGranularity || position >= total) {
+                    reported = position;
+                    notifyProgress(position, total);
+                }
+            }
+        } finally {
+            mBufferPool.release(buffer);
+        }
+    }
+
+    private void checkCanceled() throws InterruptedIOException {
+        if (mCancellationSignal != null && mCancellationSignal.isCanceled())
+            throw new InterruptedIOException("upload canceled:" + mFile);
+    }
+
+    private void notifyProgress(long bytesWrite, long contentLength) {
+        if (mProgressListener != null) {
+            mProgressListener.onProgress(bytesWrite, contentLength);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.zhy.base;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在线程池中并行校验上传文件是否存在并获取文件大小，完成后在主线程回调
+ */
+final class FileValidator {
+    /**
+     * 无效文件的大小
+     */
+    static final long INVALID = -1;
+
+    private static final int POOL_SIZE = 4;
+
+    private static Executor sExecutor;
+
+    private FileValidator() {
+    }
+
+    /**
+     * 校验文件
+     *
+     * @param paths
+     * @param listener 在主线程回调
+     */
+    static void validate(final List<String> paths, final Listener listener) {
+        final int count = paths.size();
+        final long[] sizes = new long[count];
+        final int slices = Math.min(POOL_SIZE, count);
+        final AtomicInteger remaining = new AtomicInteger(slices);
+        final Executor executor = getExecutor();
+        for (int slice = 0; slice < slices; slice++) {
+            final int start = count * slice / slices;
+            final int end = count * (slice + 1) / slices;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = start; i < end; i++) {
+                        final String path = paths.get(i);
+                        final File file = TextUtils.isEmpty(path) ? null : new File(path);
+                        if (file == null || !file.exists()) {
+                            sizes[i] = INVALID;
+                        } else {
+                            sizes[i] = file.length();
+                        }
+                    }
+
+                    if (remaining.decrementAndGet() == 0) { //最后完成的分段负责回调
+                        final List<String> invalidPaths = new ArrayList<>();
+                        for (int i = 0; i < count; i++) {
+                            if (sizes[i] == INVALID) {
+                                invalidPaths.add(paths.get(i));
+                            }
+                        }
+                        new Handler(Looper.getMainLooper()).post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onValidated(sizes, invalidPaths);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    private static Executor getExecutor() {
+        synchronized (FileValidator.class) {
+            if (sExecutor == null) {
+                sExecutor = Executors.newFixedThreadPool(POOL_SIZE);
+            }
+            return sExecutor;
+        }
+    }
+
+    interface Listener {
+        /**
+         * @param sizes        每个文件的大小，无效文件为{@link #INVALID}
+         * @param invalidPaths 不存在的文件，按传入顺序排列
+         */
+        void onValidated(long[] sizes, List<String> invalidPaths);
+    }
+}
@@ -0,0 +1,66 @@
+package com.zhy.base;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * BaseMultiEasyAdapter的一种item类型，布局id同时作为viewType
+ */
+public abstract class ItemViewDelegate<T, VH extends RecyclerView.ViewHolder> {
+    private ViewHolderFactory<VH> mViewHolderFactory;
+
+    /**
+     * 是否由该类型处理
+     *
+     * @param model
+     * @param position
+     * @return
+     */
+    protected abstract boolean isForViewType(T model, int position);
+
+    protected abstract void bindViewHolder(VH holder, int position, T model);
+
+    /**
+     * 延迟绑定模式下的耗时绑定，见{@link com.zhy.RecyclerEasyAdapter#setDeferredBindEnabled(boolean)}
+     *
+     * @param holder
+     * @param position
+     * @param model
+     */
+    protected void bindViewHolderDeferred(VH holder, int position, T model) {
+    }
+
+    protected abstract int getLayoutId();
+
+    /**
+     * 共用缓存池中该类型的最大缓存数量，小于等于0表示使用缓存池默认值
+     *
+     * @return
+     */
+    protected int getMaxRecycledViews() {
+        return 0;
+    }
+
+    /**
+     * 生成泛型ViewHolder
+     *
+     * @param view
+     * @return
+     */
+    protected VH getViewHolder(View view) {
+        if (mViewHolderFactory == null) {
+            mViewHolderFactory = getViewHolderFactory();
+        }
+        return mViewHolderFactory.create(view);
+    }
+
+    /**
+     * 获取ViewHolder工厂，默认根据泛型解析，每个类只解析一次
+     *
+     * @return
+     */
+    protected ViewHolderFactory<VH> getViewHolderFactory() {
+        return ViewHolderFactories.getByTypeArgument(getClass(), ItemViewDelegate.class, 1);
+    }
+}
@@ -0,0 +1,267 @@
+package com.zhy.base;
+
+import android.os.CancellationSignal;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 列表过滤，配合{@link BaseSimpleEasyAdapter#setFilter(ListFilter)}在后台线程执行。
+ * 查询变长时只在上次结果中继续过滤；设置分词后会在后台建立前缀索引，按每个查询词的前缀查找
+ */
+public class ListFilter<T> {
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final Matcher<T> mMatcher;
+    private final Tokenizer<T> mTokenizer;
+
+    // 以下状态只在过滤线程访问
+    private List<T> mSource;
+    private String mLastQuery;
+    private int[] mLastResult;
+    private String[] mIndexTokens;
+    private int[] mIndexPositions;
+
+    /**
+     * 逐条匹配过滤
+     *
+     * @param matcher 匹配规则，需要满足匹配较长查询的item一定匹配它的前缀查询
+     */
+    public ListFilter(Matcher<T> matcher) {
+        this(matcher, null);
+    }
+
+    /**
+     * 前缀索引过滤
+     *
+     * @param matcher   可以为null，不为null时对索引查找的结果再逐条匹配
+     * @param tokenizer 分词，用于建立前缀索引
+     */
+    public ListFilter(Matcher<T> matcher, Tokenizer<T> tokenizer) {
+        if (matcher == null && tokenizer == null)
+            throw new IllegalArgumentException("matcher and tokenizer are both null");
+
+        mMatcher = matcher;
+        mTokenizer = tokenizer;
+    }
+
+    /**
+     * 过滤数据，在后台线程调用
+     *
+     * @param source 数据快照，过滤期间不能修改
+     * @param query  查询
+     * @param signal 取消信号
+     * @return 匹配的数据位置，按升序排列，被取消时返回null
+     */
+    synchronized int[] filter(List<T> source, String query, CancellationSignal signal) {
+        if (source != mSource) {
+            mSource = source;
+            mLastQuery = null;
+            mLastResult = null;
+            mIndexTokens = null;
+            mIndexPositions = null;
+        }
+
+        int[] result;
+        if (mTokenizer != null) {
+            if (mIndexTokens == null && !buildIndex(source, signal))
+                return null;
+
+            result = searchIndex(source.size(), query);
+            if (result != null && mMatcher != null) {
+                result = match(source, query, result, result.length, signal);
+            }
+        } else if (mLastQuery != null && query.startsWith(mLastQuery)) { //查询变长，在上次结果中继续过滤
+            result = match(source, query, mLastResult, mLastResult.length, signal);
+        } else {
+            result = match(source, query, null, source.size(), signal);
+        }
+
+        if (result != null) {
+            mLastQuery = query;
+            mLastResult = result;
+        }
+        return result;
+    }
+
+    private int[] match(List<T> source, String query, int[] candidates, int count, CancellationSignal signal) {
+        final int[] result = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && signal.isCanceled())
+                return null;
+
+            final int position = candidates == null ? i : candidates[i];
+            if (mMatcher.matches(source.get(position), query)) {
+                result[size++] = position;
+            }
+        }
+        return size == count ? result : Arrays.copyOf(result, size);
+    }
+
+    private boolean buildIndex(List<T> source, CancellationSignal signal) {
+        final List<Token> tokens = new ArrayList<>(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && signal.isCanceled())
+                return false;
+
+            final String[] itemTokens = mTokenizer.getTokens(source.get(i));
+            if (itemTokens == null)
+                continue;
+
+            for (String token : itemTokens) {
+                if (token != null && token.length() > 0) {
+                    tokens.add(new Token(token.toLowerCase(Locale.getDefault()), i));
+                }
+            }
+        }
+
+        final Token[] array = tokens.toArray(new Token[0]);
+        Arrays.sort(array, new Comparator<Token>() {
+            @Override
+            public int compare(Token o1, Token o2) {
+                return o1.text.compareTo(o2.text);
+            }
+        });
+
+        mIndexTokens = new String[array.length];
+        mIndexPositions = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            mIndexTokens[i] = array[i].text;
+            mIndexPositions[i] = array[i].position;
+        }
+        return true;
+    }
+
+    /**
+     * 查询按空白拆分为多个词，item需要每个词都有以它为前缀的分词
+     */
+    private int[] searchIndex(int sourceSize, String query) {
+        final String[] words = query.toLowerCase(Locale.getDefault()).trim().split("\\s+");
+        long[] matched = null;
+        for (String word : words) {
+            final long[] bits = new long[(sourceSize + 63) >>> 6];
+            int index = lowerBound(mIndexTokens, word);
+            while (index < mIndexTokens.length && mIndexTokens[index].startsWith(word)) {
+                final int position = mIndexPositions[index];
+                bits[position >>> 6] |= 1L << position;
+                index++;
+            }
+
+            if (matched == null) {
+                matched = bits;
+            } else {
+                for (int i = 0; i < matched.length; i++) {
+                    matched[i] &= bits[i];
+                }
+            }
+        }
+
+        int count = 0;
+        for (long word : matched) {
+            count += Long.bitCount(word);
+        }
+        final int[] result = new int[count];
+        int size = 0;
+        for (int i = 0; i < matched.length; i++) {
+            long word = matched[i];
+            while (word != 0) {
+                result[size++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    private static int lowerBound(String[] tokens, String key) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 计算两个升序位置数组之间的差异并按范围通知，null表示未过滤的全部位置
+     *
+     * @param oldPositions 原来显示的数据位置
+     * @param oldCount     原来显示的条数
+     * @param newPositions 新显示的数据位置
+     * @param newCount     新显示的条数
+     * @param callback
+     */
+    static void dispatchUpdates(int[] oldPositions, int oldCount, int[] newPositions, int newCount, ListUpdateCallback callback) {
+        int position = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oldCount || j < newCount) {
+            final int oldValue = i < oldCount ? valueAt(oldPositions, i) : Integer.MAX_VALUE;
+            final int newValue = j < newCount ? valueAt(newPositions, j) : Integer.MAX_VALUE;
+            if (oldValue == newValue) {
+                position++;
+                i++;
+                j++;
+            } else if (oldValue < newValue) {
+                int count = 0;
+                while (i < oldCount && valueAt(oldPositions, i) < newValue) {
+                    i++;
+                    count++;
+                }
+                callback.onRemoved(position, count);
+            } else {
+                int count = 0;
+                while (j < newCount && valueAt(newPositions, j) < oldValue) {
+                    j++;
+                    count++;
+                }
+                callback.onInserted(position, count);
+                position += count;
+            }
+        }
+    }
+
+    private static int valueAt(int[] positions, int index) {
+        return positions == null ? index : positions[index];
+    }
+
+    private static final class Token {
+        final String text;
+        final int position;
+
+        Token(String text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    /**
+     * 匹配规则，在后台线程调用
+     */
+    public interface Matcher<T> {
+        boolean matches(T item, String query);
+    }
+
+    /**
+     * 分词，在后台线程调用
+     */
+    public interface Tokenizer<T> {
+        /**
+         * 获取item的分词，查询词是分词的前缀时匹配
+         *
+         * @param item
+         * @return
+         */
+        String[] getTokens(T item);
+    }
+}
@@ -0,0 +1,13 @@
+package com.zhy.base;
+
+import java.util.List;
+
+/**
+ * 异步校验发现无效文件时的回调，上传回调同时实现该接口时才会回调，之后回调onError
+ */
+public interface OnInvalidFilesListener {
+    /**
+     * @param invalidPaths 为空或不存在的文件路径，按传入顺序排列
+     */
+    void onInvalidFiles(List<String> invalidPaths);
+}
@@ -0,0 +1,270 @@
+package com.zhy.base;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 分页加载的数据源，只在内存中保留访问位置附近的若干页，未加载的位置返回null作为占位
+ * 配合{@link BaseSimpleEasyAdapter#setPagedData(PagedData)}使用，所有方法需要在主线程调用
+ */
+public class PagedData<T> {
+    private static Executor sDefaultExecutor;
+
+    private final PageLoader<T> mLoader;
+    private final int mTotalCount;
+    private final int mPageSize;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final SparseArray<Object[]> mPages = new SparseArray<>();
+    private final SparseIntArray mLoadingPages = new SparseIntArray();
+    private int mPrefetchDistance;
+    private int mMaxPages = 8;
+    private Executor mExecutor;
+    private RecyclerView.Adapter<?> mAdapter;
+    private int mGeneration;
+    private int mLastAccessedPage;
+    /**
+     * 显示中的位置，由adapter在item显示和移出时更新
+     */
+    private final BitSet mVisiblePositions = new BitSet();
+
+    /**
+     * @param loader     分页加载
+     * @param totalCount 数据总条数
+     * @param pageSize   每页条数
+     */
+    public PagedData(PageLoader<T> loader, int totalCount, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize <= 0");
+
+        mLoader = loader;
+        mTotalCount = totalCount;
+        mPageSize = pageSize;
+        mPrefetchDistance = pageSize;
+    }
+
+    /**
+     * 设置预加载距离，访问某个位置时会加载前后prefetchDistance条数据所在的页，默认为一页
+     *
+     * @param prefetchDistance
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = Math.max(prefetchDistance, 0);
+    }
+
+    /**
+     * 设置内存中最多保留的页数，超出时淘汰离访问位置最远的页，默认为8页。
+     * 不会小于预加载范围需要的页数，显示中的位置及其预加载范围内的页不会被淘汰，此时可以暂时超出
+     *
+     * @param maxPages
+     */
+    public void setMaxPages(int maxPages) {
+        mMaxPages = maxPages;
+    }
+
+    /**
+     * 设置加载数据的线程池，默认为共用的单线程
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 数据总条数
+     *
+     * @return
+     */
+    public int size() {
+        return mTotalCount;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * 获取某个位置的数据，同时触发附近页的加载
+     *
+     * @param position
+     * @return 未加载时返回null
+     */
+    public T get(int position) {
+        loadAround(position);
+        return peek(position);
+    }
+
+    /**
+     * 获取某个位置的数据，不会触发加载
+     *
+     * @param position
+     * @return 未加载时返回null
+     */
+    public T peek(int position) {
+        final Object[] page = mPages.get(position / mPageSize);
+        return page == null ? null : (T) page[position % mPageSize];
+    }
+
+    public boolean isLoaded(int position) {
+        return mPages.get(position / mPageSize) != null;
+    }
+
+    /**
+     * 清除已加载的页，重新按需加载
+     */
+    public void invalidate() {
+        mGeneration++;
+        mPages.clear();
+        mLoadingPages.clear();
+        if (mAdapter != null) {
+            mAdapter.notifyItemRangeChanged(0, mTotalCount);
+        }
+    }
+
+    void attach(RecyclerView.Adapter<?> adapter) {
+        mAdapter = adapter;
+    }
+
+    void detach() {
+        mAdapter = null;
+        mGeneration++;
+        mPages.clear();
+        mLoadingPages.clear();
+        mVisiblePositions.clear();
+    }
+
+    void onViewAttached(int position) {
+        if (position >= 0) {
+            mVisiblePositions.set(position);
+        }
+    }
+
+    void onViewDetached(int position) {
+        if (position >= 0) {
+            mVisiblePositions.clear(position);
+        }
+    }
+
+    private void loadAround(int position) {
+        mLastAccessedPage = position / mPageSize;
+        final int firstPage = Math.max(position - mPrefetchDistance, 0) / mPageSize;
+        final int lastPage = Math.min(position + mPrefetchDistance, mTotalCount - 1) / mPageSize;
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (mPages.get(page) == null && mLoadingPages.get(page) == 0) {
+                loadPage(page);
+            }
+        }
+    }
+
+    private void loadPage(final int page) {
+        mLoadingPages.put(page, 1);
+        final int generation = mGeneration;
+        final int positionStart = page * mPageSize;
+        final int count = Math.min(mPageSize, mTotalCount - positionStart);
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> items = null;
+                try {
+                    items = mLoader.loadPage(positionStart, count);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                final Object[] data = items == null ? null : items.toArray();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration)
+                            return;
+
+                        mLoadingPages.delete(page);
+                        if (data == null) //加载失败，下次访问时重新加载
+                            return;
+
+                        mPages.put(page, data.length >= count ? data : Arrays.copyOf(data, count));
+                        evictPages();
+                        if (mAdapter != null) {
+                            mAdapter.notifyItemRangeChanged(positionStart, count);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 超出内存预算时淘汰离访问范围最远的页，被淘汰的位置再次访问时重新加载。
+     * 访问范围为第一个到最后一个显示中的位置加上最后访问的位置，范围及其预加载距离内的页不淘汰，
+     * 否则可见范围跨越的页数超过预算时，加载一页就会淘汰另一页显示中的页，两者反复加载
+     */
+    private void evictPages() {
+        final int windowPages = 2 * ((mPrefetchDistance + mPageSize - 1) / mPageSize) + 1;
+        final int maxPages = Math.max(mMaxPages, windowPages);
+        if (mPages.size() <= maxPages)
+            return;
+
+        int firstPosition = mLastAccessedPage * mPageSize;
+        int lastPosition = firstPosition;
+        if (!mVisiblePositions.isEmpty()) {
+            firstPosition = Math.min(firstPosition, mVisiblePositions.nextSetBit(0));
+            lastPosition = Math.max(lastPosition, mVisiblePositions.length() - 1);
+        }
+        final int firstPage = Math.max(firstPosition - mPrefetchDistance, 0) / mPageSize;
+        final int lastPage = (lastPosition + mPrefetchDistance) / mPageSize;
+
+        while (mPages.size() > maxPages) {
+            int farthestIndex = -1;
+            int farthestDistance = 0;
+            for (int i = 0; i < mPages.size(); i++) {
+                final int page = mPages.keyAt(i);
+                final int distance = page < firstPage ? firstPage - page : page - lastPage;
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthestIndex = i;
+                }
+            }
+            if (farthestIndex < 0) //剩下的页都在访问范围内
+                return;
+
+            mPages.removeAt(farthestIndex);
+        }
+    }
+
+    private Executor getExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+
+        synchronized (PagedData.class) {
+            if (sDefaultExecutor == null) {
+                sDefaultExecutor = Executors.newSingleThreadExecutor();
+            }
+            return sDefaultExecutor;
+        }
+    }
+
+    /**
+     * 分页加载，在后台线程调用
+     */
+    public interface PageLoader<T> {
+        /**
+         * 加载一页数据
+         *
+         * @param positionStart 起始位置
+         * @param count         条数
+         * @return 加载结果，返回null表示加载失败
+         */
+        List<T> loadPage(int positionStart, int count);
+    }
+}
@@ -0,0 +1,295 @@
+package com.zhy.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 上传去重缓存，记录文件内容哈希到上传结果的映射，内容相同的文件不再重复上传。
+ * 按最近使用淘汰，超过最大条数时丢弃最久未使用的记录。每次更新只在文件末尾追加一条记录，
+ * 文件中的记录超过最大条数两倍时先写临时文件再重命名覆盖，只保留有效记录。
+ * 通过{@link BaseSingleUploader#setDedupCache}或{@link BaseMultiUploader#setDedupCache}使用
+ */
+public class UploadDedupCache {
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private static final int VERSION = 2;
+
+    /**
+     * {@link DataOutputStream#writeUTF(String)}能写入的最大字节数
+     */
+    private static final int MAX_UTF_LENGTH = 65535;
+
+    private static Executor sDefaultExecutor;
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private final LinkedHashMap<String, String> mEntries;
+    private boolean mLoaded;
+    /**
+     * 文件中的记录数，包括已被覆盖或淘汰的记录，文件无效时为-1
+     */
+    private int mFileRecords = -1;
+    private Executor mExecutor;
+
+    /**
+     * @param file 缓存文件，例如context.getFilesDir()下的文件
+     */
+    public UploadDedupCache(File file) {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param file       缓存文件，例如context.getFilesDir()下的文件
+     * @param maxEntries 最大条数
+     */
+    public UploadDedupCache(File file, final int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries <= 0:" + maxEntries);
+
+        mFile = file;
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 设置计算哈希和读写缓存的线程池，默认为共用的单线程，
+     * 单线程可以保证写入缓存后同一批次后续的文件能够命中
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    Executor getExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+
+        synchronized (UploadDedupCache.class) {
+            if (sDefaultExecutor == null) {
+                sDefaultExecutor = Executors.newSingleThreadExecutor();
+            }
+            return sDefaultExecutor;
+        }
+    }
+
+    public int getMaxEntries() {
+        return mMaxEntries;
+    }
+
+    /**
+     * 获取内容哈希对应的上传结果，在后台线程调用
+     *
+     * @param hash
+     * @return 没有记录时返回null
+     */
+    public synchronized String get(String hash) {
+        load();
+        return mEntries.get(hash);
+    }
+
+    /**
+     * 记录上传结果，在后台线程调用，编码后超过64KB的结果不会缓存
+     *
+     * @param hash
+     * @param result
+     */
+    public synchronized void put(String hash, String result) {
+        if (utfLength(hash) > MAX_UTF_LENGTH || utfLength(result) > MAX_UTF_LENGTH)
+            return;
+
+        load();
+        if (result.equals(mEntries.put(hash, result)))
+            return;
+
+        try {
+            if (mFileRecords < 0 || mFileRecords >= mMaxEntries * 2) {
+                write();
+            } else {
+                append(hash, result);
+            }
+        } catch (IOException e) {
+            // 缓存写入失败只影响下次去重，下次更新时重写整个文件
+            mFileRecords = -1;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 在缓存的线程池中记录上传结果，单线程时同一批次后续内容相同的文件可以命中
+     *
+     * @param hash
+     * @param result
+     */
+    void putAsync(final String hash, final String result) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                put(hash, result);
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mLoaded = true;
+        mFileRecords = -1;
+        mFile.delete();
+    }
+
+    /**
+     * 流式计算文件内容的SHA-256，在后台线程调用
+     *
+     * @param file
+     * @return 十六进制字符串
+     * @throws IOException
+     */
+    public static String hash(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final FileInputStream in = new FileInputStream(file);
+        final ByteBufferPool bufferPool = ByteBufferPool.getDefault();
+        final ByteBuffer buffer = bufferPool.acquire();
+        try {
+            final FileChannel channel = in.getChannel();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            bufferPool.release(buffer);
+            UploadJournal.closeQuietly(in);
+        }
+
+        final byte[] bytes = digest.digest();
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 按写入顺序读取记录，进程在追加时被杀留下的不完整记录会被丢弃，有不完整记录时下次更新重写整个文件
+     */
+    private void load() {
+        if (mLoaded)
+            return;
+
+        mLoaded = true;
+        if (!mFile.exists())
+            return;
+
+        DataInputStream in = null;
+        int records = 0;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != VERSION)
+                return;
+
+            while (in.available() > 0) {
+                final String hash = in.readUTF();
+                final String result = in.readUTF();
+                mEntries.put(hash, result);
+                records++;
+            }
+            mFileRecords = records;
+        } catch (IOException e) {
+            // 不完整的记录，保留已读取的记录
+        } finally {
+            UploadJournal.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 在文件末尾追加一条记录，先在内存中编码，一次写入
+     */
+    private void append(String hash, String result) throws IOException {
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        final DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeUTF(hash);
+        recordOut.writeUTF(result);
+
+        final FileOutputStream out = new FileOutputStream(mFile, true);
+        try {
+            record.writeTo(out);
+        } finally {
+            UploadJournal.closeQuietly(out);
+        }
+        mFileRecords++;
+    }
+
+    /**
+     * 编码后的字节数，规则同{@link DataOutputStream#writeUTF(String)}
+     */
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 按最久未使用到最近使用的顺序写入，读取时保持淘汰顺序
+     */
+    private void write() throws IOException {
+        final File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("cannot create dir:" + parent);
+
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream fos = new FileOutputStream(temp);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            out.writeInt(VERSION);
+            for (Map.Entry<String, String> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            UploadJournal.closeQuietly(out);
+        }
+
+        if (!temp.renameTo(mFile))
+            throw new IOException("cannot rename " + temp + " to " + mFile);
+
+        mFileRecords = mEntries.size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.zhy.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分块上传的断点记录，记录每个文件的上传会话和服务端已确认的偏移。
+ * 每次更新先写临时文件再重命名覆盖，进程被杀时不会留下损坏的记录
+ */
+final class UploadJournal {
+    private static final int VERSION = 1;
+    /**
+     * 最多保留的记录数，超过后丢弃最早的记录
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    private final File mFile;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>();
+    private boolean mLoaded;
+
+    UploadJournal(File file) {
+        mFile = file;
+    }
+
+    synchronized Entry get(String key) {
+        load();
+        return mEntries.get(key);
+    }
+
+    synchronized void put(String key, String session, long offset) throws IOException {
+        load();
+        mEntries.remove(key);
+        mEntries.put(key, new Entry(session, offset));
+        final Iterator<String> iterator = mEntries.keySet().iterator();
+        while (mEntries.size() > MAX_ENTRIES) {
+            iterator.next();
+            iterator.remove();
+        }
+        write();
+    }
+
+    synchronized void remove(String key) throws IOException {
+        load();
+        if (mEntries.remove(key) != null) {
+            write();
+        }
+    }
+
+    private void load() {
+        if (mLoaded)
+            return;
+
+        mLoaded = true;
+        if (!mFile.exists())
+            return;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != VERSION)
+                return;
+
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                final String session = in.readUTF();
+                final long offset = in.readLong();
+                mEntries.put(key, new Entry(session, offset));
+            }
+        } catch (IOException e) {
+            // 记录无法读取时从头开始上传
+            mEntries.clear();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void write() throws IOException {
+        if (mEntries.isEmpty()) { //没有未完成的上传时删除记录文件
+            if (mFile.exists() && !mFile.delete())
+                throw new IOException("cannot delete " + mFile);
+            return;
+        }
+
+        final File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("cannot create dir:" + parent);
+
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream fos = new FileOutputStream(temp);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().session);
+                out.writeLong(entry.getValue().offset);
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            closeQuietly(out);
+        }
+
+        if (!temp.renameTo(mFile))
+            throw new IOException("cannot rename " + temp + " to " + mFile);
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static final class Entry {
+        final String session;
+        final long offset;
+
+        Entry(String session, long offset) {
+            this.session = session;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,666 @@
+package com.zhy.base;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 持久化上传队列，进程被杀后未完成的文件在下次启动时自动继续上传。
+ * 批次和每个文件的结果追加写入日志文件，每条记录写入后同步到磁盘，已结束的批次累积到一定数量后压缩日志。
+ * 文件上传完成但结果还没写入日志时进程被杀，下次启动会重新上传该文件；
+ * 批次结果回调后还没移除时进程被杀，下次启动会再次回调，即至少回调一次，
+ * 上传实现和监听需要能够处理重复。
+ * 没有设置监听时已结束的批次保留在日志中，设置监听后再回调。
+ * 需要在Application创建的时候调用{@link #init(Context, Uploader, Listener)}，
+ * 不依赖页面，上传实现通过{@link Uploader}提供，例如配合{@link ChunkedUpload}在文件内断点续传
+ */
+public final class UploadQueue {
+    private static final String FILE_NAME = "upload_queue.journal";
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_SUCCESS = 2;
+    private static final byte RECORD_ERROR = 3;
+    private static final byte RECORD_REMOVE = 4;
+
+    /**
+     * 无效记录达到该数量且多于有效记录时压缩日志
+     */
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private static UploadQueue sInstance;
+
+    private final File mFile;
+    private final Uploader mUploader;
+    private Listener mListener;
+    private int mMaxParallelism = UploadScheduler.DEFAULT_MAX_PARALLELISM;
+
+    private final Map<Long, Batch> mBatches = new LinkedHashMap<>();
+    private final ArrayDeque<Task> mQueue = new ArrayDeque<>();
+    private int mRunning;
+    private boolean mDispatching;
+    private long mNextBatchId = 1;
+
+    private boolean mLoaded;
+    private DataOutputStream mOut;
+    private FileOutputStream mOutFile;
+    private int mLiveRecords;
+    private int mGarbageRecords;
+
+    /**
+     * @param file     日志文件
+     * @param uploader 上传实现
+     */
+    public UploadQueue(File file, Uploader uploader) {
+        mFile = file;
+        mUploader = uploader;
+    }
+
+    /**
+     * 初始化，不设置监听，已结束的批次在{@link #setListener(Listener)}后回调
+     *
+     * @param context
+     * @param uploader 上传实现
+     */
+    public static void init(Context context, Uploader uploader) {
+        init(context, uploader, null);
+    }
+
+    /**
+     * 初始化，需要在Application创建的时候初始化，在后台线程读取日志并继续上传未完成的文件，
+     * 监听在继续上传之前设置，上次进程中已结束的批次不会漏掉回调
+     *
+     * @param context
+     * @param uploader 上传实现
+     * @param listener 结果监听
+     */
+    public static void init(Context context, Uploader uploader, Listener listener) {
+        final UploadQueue queue;
+        synchronized (UploadQueue.class) {
+            if (sInstance != null)
+                return;
+
+            queue = new UploadQueue(new File(context.getFilesDir(), FILE_NAME), uploader);
+            queue.mListener = listener;
+            sInstance = queue;
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.resumePending();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "UploadQueue").start();
+    }
+
+    /**
+     * {@link #init(Context, Uploader, Listener)}创建的队列
+     *
+     * @return
+     */
+    public static UploadQueue getInstance() {
+        synchronized (UploadQueue.class) {
+            if (sInstance == null)
+                throw new IllegalStateException("UploadQueue.init() has not been called");
+
+            return sInstance;
+        }
+    }
+
+    /**
+     * 设置结果监听，在上传回调的线程回调，
+     * 没有监听期间已结束的批次在这里回调
+     *
+     * @param listener
+     */
+    public void setListener(Listener listener) {
+        final List<Batch> finished = new ArrayList<>();
+        synchronized (this) {
+            mListener = listener;
+            if (listener == null)
+                return;
+
+            for (Batch batch : mBatches.values()) {
+                if (batch.isFinished() && !batch.finishing) {
+                    finished.add(batch);
+                }
+            }
+        }
+
+        for (Batch batch : finished) {
+            finishBatch(batch);
+        }
+    }
+
+    /**
+     * 设置同时上传的最大文件数，默认为3
+     *
+     * @param maxParallelism
+     */
+    public void setMaxParallelism(int maxParallelism) {
+        if (maxParallelism <= 0)
+            throw new IllegalArgumentException("maxParallelism <= 0:" + maxParallelism);
+
+        synchronized (this) {
+            mMaxParallelism = maxParallelism;
+        }
+        startReadyUploads();
+    }
+
+    /**
+     * 添加一批文件，写入日志后开始上传
+     *
+     * @param paths 文件路径
+     * @return 批次id，在回调中区分批次
+     * @throws IOException 日志写入失败，批次没有被添加
+     */
+    public long enqueue(List<String> paths) throws IOException {
+        if (paths == null || paths.isEmpty())
+            throw new IllegalArgumentException("path is empty");
+
+        final Batch batch;
+        synchronized (this) {
+            load();
+            batch = new Batch(mNextBatchId, paths.toArray(new String[paths.size()]));
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            writeAdd(new DataOutputStream(record), batch);
+            append(record);
+            mNextBatchId++;
+            mBatches.put(batch.id, batch);
+            mLiveRecords++;
+            for (int tag = 0; tag < batch.paths.length; tag++) {
+                batch.scheduled[tag] = true;
+                mQueue.addLast(new Task(batch, tag));
+            }
+        }
+        startReadyUploads();
+        return batch.id;
+    }
+
+    /**
+     * 读取日志，继续上传未完成的文件，上次进程中已全部结束的批次在这里回调。
+     * 重复调用不会重复上传
+     *
+     * @throws IOException 日志读取失败
+     */
+    public void resumePending() throws IOException {
+        final List<Batch> finished = new ArrayList<>();
+        synchronized (this) {
+            load();
+            for (Batch batch : mBatches.values()) {
+                if (batch.isFinished()) {
+                    finished.add(batch);
+                    continue;
+                }
+                for (int tag = 0; tag < batch.paths.length; tag++) {
+                    if (!batch.scheduled[tag] && !batch.isSettled(tag)) {
+                        batch.scheduled[tag] = true;
+                        mQueue.addLast(new Task(batch, tag));
+                    }
+                }
+            }
+        }
+
+        for (Batch batch : finished) {
+            finishBatch(batch);
+        }
+        startReadyUploads();
+    }
+
+    /**
+     * 放弃批次，未开始的文件不再上传，上传中的文件结束后不再回调
+     *
+     * @param batchId
+     */
+    public synchronized void remove(long batchId) {
+        final Batch batch = mBatches.remove(batchId);
+        if (batch == null)
+            return;
+
+        final Iterator<Task> iterator = mQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().batch == batch) {
+                iterator.remove();
+            }
+        }
+
+        final int records = 1 + batch.settled;
+        mLiveRecords -= records;
+        mGarbageRecords += records + 1;
+        try {
+            final ByteArrayOutputStream record = new ByteArrayOutputStream(9);
+            final DataOutputStream out = new DataOutputStream(record);
+            out.writeByte(RECORD_REMOVE);
+            out.writeLong(batchId);
+            append(record);
+            if (mGarbageRecords >= COMPACT_THRESHOLD && mGarbageRecords > mLiveRecords) {
+                compact();
+            }
+        } catch (IOException e) {
+            // 下次启动时会回调该批次并再次移除
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 还没有结束的文件数
+     *
+     * @return
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Batch batch : mBatches.values()) {
+            count += batch.paths.length - batch.settled;
+        }
+        return count;
+    }
+
+    /**
+     * 按同时上传的最大文件数开始排队的文件。
+     * 只有一个线程在开始上传，上传实现同步回调时不会递归
+     */
+    private void startReadyUploads() {
+        synchronized (this) {
+            if (mDispatching)
+                return;
+
+            mDispatching = true;
+        }
+
+        boolean drained = false;
+        try {
+            while (true) {
+                final List<Task> ready = new ArrayList<>();
+                synchronized (this) {
+                    while (mRunning < mMaxParallelism && !mQueue.isEmpty()) {
+                        final Task task = mQueue.pollFirst();
+                        final Batch batch = task.batch;
+                        if (batch.attempts[task.tag]++ == 0) {
+                            batch.startTimes[task.tag] = uptimeMillis();
+                        }
+                        mRunning++;
+                        ready.add(task);
+                    }
+                    if (ready.isEmpty()) {
+                        mDispatching = false;
+                        drained = true;
+                        return;
+                    }
+                }
+
+                for (Task task : ready) {
+                    mUploader.upload(task.batch.paths[task.tag], new UploadCallback(task));
+                }
+            }
+        } finally {
+            if (!drained) {
+                synchronized (this) {
+                    mDispatching = false;
+                }
+            }
+        }
+    }
+
+    private void onFileFinished(Task task, String result, String error) {
+        final Batch batch = task.batch;
+        final BatchResult.FileResult fileResult;
+        final Listener listener;
+        final boolean finished;
+        synchronized (this) {
+            mRunning--;
+            if (mBatches.get(batch.id) != batch) { //已移除
+                fileResult = null;
+                listener = null;
+                finished = false;
+            } else {
+                batch.settle(task.tag, result, error, uptimeMillis());
+                mLiveRecords++;
+                try {
+                    final ByteArrayOutputStream record = new ByteArrayOutputStream();
+                    final DataOutputStream out = new DataOutputStream(record);
+                    out.writeByte(error == null ? RECORD_SUCCESS : RECORD_ERROR);
+                    out.writeLong(batch.id);
+                    out.writeInt(task.tag);
+                    out.writeUTF(error == null ? result : error);
+                    append(record);
+                } catch (IOException e) {
+                    // 记录失败时下次启动会重新上传该文件
+                    e.printStackTrace();
+                }
+                fileResult = batch.getFileResult(task.tag);
+                listener = mListener;
+                finished = batch.isFinished();
+            }
+        }
+
+        if (listener != null) {
+            listener.onFileFinished(batch.id, fileResult);
+        }
+        if (finished) {
+            finishBatch(batch);
+        }
+        startReadyUploads();
+    }
+
+    /**
+     * 回调批次结果后移除，回调前进程被杀时下次启动会再次回调，
+     * 没有监听时保留批次，设置监听后再回调
+     */
+    private void finishBatch(Batch batch) {
+        final BatchResult result;
+        final Listener listener;
+        synchronized (this) {
+            if (mBatches.get(batch.id) != batch || batch.finishing || mListener == null)
+                return;
+
+            batch.finishing = true;
+            result = batch.getBatchResult();
+            listener = mListener;
+        }
+
+        listener.onBatchFinished(batch.id, result);
+        remove(batch.id);
+    }
+
+    //=========日志=========
+
+    /**
+     * 读取日志并重写为只包含未结束的批次，进程在写入时被杀留下的不完整记录会被丢弃
+     */
+    private void load() throws IOException {
+        if (mLoaded)
+            return;
+
+        if (mFile.exists()) {
+            final byte[] data = readFully(mFile);
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            try {
+                if (in.readInt() == VERSION) {
+                    mNextBatchId = in.readLong();
+                    while (true) {
+                        readRecord(in);
+                    }
+                }
+            } catch (IOException e) {
+                // 读到文件末尾或不完整的记录
+            }
+        }
+
+        compact();
+        mLoaded = true;
+    }
+
+    private void readRecord(DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        final long batchId = in.readLong();
+        switch (type) {
+            case RECORD_ADD:
+                final String[] paths = new String[in.readInt()];
+                for (int i = 0; i < paths.length; i++) {
+                    paths[i] = in.readUTF();
+                }
+                mBatches.put(batchId, new Batch(batchId, paths));
+                mNextBatchId = Math.max(mNextBatchId, batchId + 1);
+                break;
+            case RECORD_SUCCESS:
+            case RECORD_ERROR:
+                final int tag = in.readInt();
+                final String value = in.readUTF();
+                final Batch batch = mBatches.get(batchId);
+                if (batch != null && tag >= 0 && tag < batch.paths.length && !batch.isSettled(tag)) {
+                    batch.settle(tag, type == RECORD_SUCCESS ? value : null, type == RECORD_ERROR ? value : null, 0);
+                }
+                break;
+            case RECORD_REMOVE:
+                mBatches.remove(batchId);
+                break;
+            default:
+                throw new IOException("unknown record:" + type);
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名覆盖，之后追加写入新文件
+     */
+    private void compact() throws IOException {
+        final File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("cannot create dir:" + parent);
+
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream fos = new FileOutputStream(temp);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        int records = 0;
+        try {
+            out.writeInt(VERSION);
+            out.writeLong(mNextBatchId); //压缩后批次id不会重复
+            for (Batch batch : mBatches.values()) {
+                writeAdd(out, batch);
+                records++;
+                for (int tag = 0; tag < batch.paths.length; tag++) {
+                    if (!batch.isSettled(tag))
+                        continue;
+
+                    final boolean success = batch.errors[tag] == null;
+                    out.writeByte(success ? RECORD_SUCCESS : RECORD_ERROR);
+                    out.writeLong(batch.id);
+                    out.writeInt(tag);
+                    out.writeUTF(success ? batch.results[tag] : batch.errors[tag]);
+                    records++;
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            UploadJournal.closeQuietly(out);
+        }
+
+        UploadJournal.closeQuietly(mOut);
+        try {
+            if (!temp.renameTo(mFile))
+                throw new IOException("cannot rename " + temp + " to " + mFile);
+
+            mLiveRecords = records;
+            mGarbageRecords = 0;
+        } finally { //重命名失败时继续追加写入原文件
+            mOutFile = new FileOutputStream(mFile, true);
+            mOut = new DataOutputStream(new BufferedOutputStream(mOutFile));
+        }
+    }
+
+    /**
+     * 先在内存中写完整条记录再追加，编码失败时不会写入半条记录，写入后同步到磁盘
+     */
+    private void append(ByteArrayOutputStream record) throws IOException {
+        record.writeTo(mOut);
+        mOut.flush();
+        mOutFile.getFD().sync();
+    }
+
+    private static void writeAdd(DataOutputStream out, Batch batch) throws IOException {
+        out.writeByte(RECORD_ADD);
+        out.writeLong(batch.id);
+        out.writeInt(batch.paths.length);
+        for (String path : batch.paths) {
+            out.writeUTF(path);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < data.length && (read = in.read(data, offset, data.length - offset)) != -1) {
+                offset += read;
+            }
+            return data;
+        } finally {
+            UploadJournal.closeQuietly(in);
+        }
+    }
+
+    private static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * 上传实现，可以在任意线程上传
+     */
+    public interface Uploader {
+        /**
+         * 上传文件，结束后必须回调一次callback，可以在任意线程回调
+         *
+         * @param path
+         * @param callback
+         */
+        void upload(String path, Callback callback);
+    }
+
+    public interface Callback {
+        void onSuccess(String result);
+
+        void onError(String msg);
+    }
+
+    /**
+     * 上传结果监听，在上传回调的线程回调，上次进程中已结束的批次在{@link #resumePending()}的线程回调
+     */
+    public interface Listener {
+        /**
+         * 单个文件结束，失败的文件不会自动重试
+         *
+         * @param batchId
+         * @param result
+         */
+        void onFileFinished(long batchId, BatchResult.FileResult result);
+
+        /**
+         * 批次中全部文件结束，回调后批次从队列中移除
+         *
+         * @param batchId
+         * @param result
+         */
+        void onBatchFinished(long batchId, BatchResult result);
+    }
+
+    private final class UploadCallback implements Callback {
+        private final Task mTask;
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+
+        UploadCallback(Task task) {
+            mTask = task;
+        }
+
+        @Override
+        public void onSuccess(String result) {
+            if (mFinished.compareAndSet(false, true)) {
+                onFileFinished(mTask, result != null ? result : "", null);
+            }
+        }
+
+        @Override
+        public void onError(String msg) {
+            if (mFinished.compareAndSet(false, true)) {
+                onFileFinished(mTask, null, msg != null ? msg : "");
+            }
+        }
+    }
+
+    private static final class Task {
+        final Batch batch;
+        final int tag;
+
+        Task(Batch batch, int tag) {
+            this.batch = batch;
+            this.tag = tag;
+        }
+    }
+
+    private static final class Batch {
+        final long id;
+        final String[] paths;
+        final String[] results;
+        final String[] errors;
+        final boolean[] settledFlags;
+        /**
+         * 本进程中已排队或上传中
+         */
+        final boolean[] scheduled;
+        final int[] attempts;
+        final long[] startTimes;
+        final long[] durations;
+        int settled;
+        /**
+         * 正在回调批次结果
+         */
+        boolean finishing;
+
+        Batch(long id, String[] paths) {
+            this.id = id;
+            this.paths = paths;
+            results = new String[paths.length];
+            errors = new String[paths.length];
+            settledFlags = new boolean[paths.length];
+            scheduled = new boolean[paths.length];
+            attempts = new int[paths.length];
+            startTimes = new long[paths.length];
+            durations = new long[paths.length];
+        }
+
+        boolean isSettled(int tag) {
+            return settledFlags[tag];
+        }
+
+        boolean isFinished() {
+            return settled == paths.length;
+        }
+
+        void settle(int tag, String result, String error, long now) {
+            results[tag] = result;
+            errors[tag] = error;
+            settledFlags[tag] = true;
+            if (attempts[tag] > 0) {
+                durations[tag] = now - startTimes[tag];
+            }
+            settled++;
+        }
+
+        BatchResult.FileResult getFileResult(int tag) {
+            return new BatchResult.FileResult(tag, paths[tag], results[tag], errors[tag], attempts[tag], durations[tag]);
+        }
+
+        BatchResult getBatchResult() {
+            final List<BatchResult.FileResult> succeeded = new ArrayList<>();
+            final List<BatchResult.FileResult> failed = new ArrayList<>();
+            for (int tag = 0; tag < paths.length; tag++) {
+                if (errors[tag] == null) {
+                    succeeded.add(getFileResult(tag));
+                } else {
+                    failed.add(getFileResult(tag));
+                }
+            }
+            return new BatchResult(succeeded, failed, new ArrayList<BatchResult.FileResult>());
+        }
+    }
+}
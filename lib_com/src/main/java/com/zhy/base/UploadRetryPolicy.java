@@ -0,0 +1,82 @@
+package com.zhy.base;
+
+import java.util.Random;
+
+/**
+ * 单个文件上传失败后的重试策略，按指数退避并加入随机抖动，
+ * 子类可以重写{@link #isRetryable(String)}区分可重试的错误
+ */
+public class UploadRetryPolicy {
+    private final int mMaxAttempts;
+    private final long mInitialDelay;
+    private final long mMaxDelay;
+    private float mJitter = 0.5f;
+    private final Random mRandom = new Random();
+
+    /**
+     * @param maxAttempts  最多尝试次数，包含第一次上传
+     * @param initialDelay 第一次重试的延迟，单位毫秒，之后每次翻倍
+     * @param maxDelay     最大延迟，单位毫秒
+     */
+    public UploadRetryPolicy(int maxAttempts, long initialDelay, long maxDelay) {
+        if (maxAttempts <= 0)
+            throw new IllegalArgumentException("maxAttempts <= 0:" + maxAttempts);
+
+        mMaxAttempts = maxAttempts;
+        mInitialDelay = initialDelay;
+        mMaxDelay = maxDelay;
+    }
+
+    /**
+     * 设置抖动比例，延迟在[delay * (1 - jitter), delay]之间随机，默认为0.5
+     *
+     * @param jitter 0到1
+     */
+    public void setJitter(float jitter) {
+        if (jitter < 0 || jitter > 1)
+            throw new IllegalArgumentException("jitter must be in [0, 1]:" + jitter);
+
+        mJitter = jitter;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * 错误是否可以重试，默认都可以重试
+     *
+     * @param msg {@link BaseMultiUploader#notifyUploadError(BaseMultiUploader.UploadProxy, String)}传入的错误消息
+     * @return
+     */
+    protected boolean isRetryable(String msg) {
+        return true;
+    }
+
+    /**
+     * 获取重试前的延迟
+     *
+     * @param attempt 已经尝试的次数，从1开始
+     * @return 单位毫秒
+     */
+    public long getRetryDelay(int attempt) {
+        final int shift = Math.min(attempt - 1, 30);
+        final long delay = Math.min(mMaxDelay, mInitialDelay << shift);
+        final float factor;
+        synchronized (mRandom) {
+            factor = 1 - mJitter * mRandom.nextFloat();
+        }
+        return (long) (delay * factor);
+    }
+
+    /**
+     * 是否还可以重试
+     *
+     * @param attempt 已经尝试的次数
+     * @param msg     错误消息
+     * @return
+     */
+    final boolean shouldRetry(int attempt, String msg) {
+        return attempt < mMaxAttempts && isRetryable(msg);
+    }
+}
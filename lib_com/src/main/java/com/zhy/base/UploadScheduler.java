@@ -0,0 +1,195 @@
+package com.zhy.base;
+
+import android.os.SystemClock;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 多文件上传调度，限制同时上传的文件数，按优先级依次开始。
+ * 开启自适应后按吞吐量调整并发数：吞吐量上升时并发数加一，明显下降时减半
+ */
+final class UploadScheduler {
+    static final int DEFAULT_MAX_PARALLELISM = 3;
+
+    /**
+     * 吞吐量提升超过该比例时增加并发
+     */
+    private static final float INCREASE_THRESHOLD = 1.1f;
+    /**
+     * 吞吐量低于该比例时减半并发
+     */
+    private static final float DECREASE_THRESHOLD = 0.7f;
+
+    private final ArrayDeque<Task> mQueue = new ArrayDeque<>();
+    private final List<Task> mRunning = new ArrayList<>();
+    private int mMaxParallelism = DEFAULT_MAX_PARALLELISM;
+    private Comparator<File> mComparator;
+    private boolean mAdaptive;
+    private int mLimit = DEFAULT_MAX_PARALLELISM;
+
+    private long mWindowStart;
+    private long mWindowBytes;
+    private int mWindowFinished;
+    private float mLastThroughput;
+
+    synchronized void setMaxParallelism(int maxParallelism) {
+        if (maxParallelism <= 0)
+            throw new IllegalArgumentException("maxParallelism <= 0:" + maxParallelism);
+
+        mMaxParallelism = maxParallelism;
+        mLimit = Math.min(mLimit, maxParallelism);
+        if (!mAdaptive) {
+            mLimit = maxParallelism;
+        }
+    }
+
+    synchronized void setComparator(Comparator<File> comparator) {
+        mComparator = comparator;
+    }
+
+    synchronized void setAdaptive(boolean adaptive) {
+        mAdaptive = adaptive;
+        if (!adaptive) {
+            mLimit = mMaxParallelism;
+        }
+    }
+
+    /**
+     * 开始新的一批上传，未开始的任务会被丢弃
+     */
+    synchronized void submit(List<Task> tasks) {
+        final List<Task> sorted = sort(tasks);
+        mQueue.clear();
+        mQueue.addAll(sorted);
+        mRunning.clear();
+        mLimit = mAdaptive ? Math.max(1, mMaxParallelism / 2) : mMaxParallelism;
+        mWindowStart = SystemClock.elapsedRealtime();
+        mWindowBytes = 0;
+        mWindowFinished = 0;
+        mLastThroughput = 0;
+    }
+
+    /**
+     * 在本批次的队列末尾追加任务，调用方按{@link #sort(List)}的顺序追加时保持优先级
+     */
+    synchronized void add(Task task) {
+        mQueue.addLast(task);
+    }
+
+    /**
+     * 按优先级排序任务
+     *
+     * @return 排序后的新列表
+     */
+    synchronized List<Task> sort(List<Task> tasks) {
+        final List<Task> sorted = new ArrayList<>(tasks);
+        if (mComparator == BaseMultiUploader.SMALL_FILES_FIRST) { //使用已获取的文件大小，不再重复读取
+            Collections.sort(sorted, new Comparator<Task>() {
+                @Override
+                public int compare(Task o1, Task o2) {
+                    return Long.compare(o1.size, o2.size);
+                }
+            });
+        } else if (mComparator != null) {
+            final Comparator<File> comparator = mComparator;
+            Collections.sort(sorted, new Comparator<Task>() {
+                @Override
+                public int compare(Task o1, Task o2) {
+                    return comparator.compare(new File(o1.path), new File(o2.path));
+                }
+            });
+        }
+        return sorted;
+    }
+
+    /**
+     * 取出可以开始的任务，同时计入上传中
+     *
+     * @return
+     */
+    synchronized List<Task> pollReady() {
+        if (mQueue.isEmpty() || mRunning.size() >= mLimit)
+            return Collections.emptyList();
+
+        final List<Task> ready = new ArrayList<>();
+        while (!mQueue.isEmpty() && mRunning.size() < mLimit) {
+            final Task task = mQueue.pollFirst();
+            mRunning.add(task);
+            ready.add(task);
+        }
+        return ready;
+    }
+
+    /**
+     * 某个文件上传结束
+     *
+     * @param tag
+     * @param success 失败的文件不计入吞吐量
+     */
+    synchronized void onFinished(int tag, boolean success) {
+        Task task = null;
+        for (int i = 0; i < mRunning.size(); i++) {
+            if (mRunning.get(i).tag == tag) {
+                task = mRunning.remove(i);
+                break;
+            }
+        }
+        if (task == null || !success)
+            return;
+
+        mWindowBytes += task.size;
+        mWindowFinished++;
+        if (mAdaptive && mWindowFinished >= mLimit) { //每完成一轮采样一次
+            adjustLimit();
+        }
+    }
+
+    /**
+     * 丢弃未开始的任务
+     */
+    synchronized void cancelPending() {
+        mQueue.clear();
+        mRunning.clear();
+    }
+
+    /**
+     * 当前允许同时上传的文件数
+     *
+     * @return
+     */
+    synchronized int getConcurrency() {
+        return mLimit;
+    }
+
+    private void adjustLimit() {
+        final long now = SystemClock.elapsedRealtime();
+        final float throughput = mWindowBytes / (float) Math.max(1, now - mWindowStart);
+        if (mLastThroughput == 0 || throughput >= mLastThroughput * INCREASE_THRESHOLD) {
+            mLimit = Math.min(mLimit + 1, mMaxParallelism);
+        } else if (throughput < mLastThroughput * DECREASE_THRESHOLD) {
+            mLimit = Math.max(1, mLimit / 2);
+        }
+
+        mLastThroughput = throughput;
+        mWindowStart = now;
+        mWindowBytes = 0;
+        mWindowFinished = 0;
+    }
+
+    static final class Task {
+        final int tag;
+        final String path;
+        final long size;
+
+        Task(int tag, String path, long size) {
+            this.tag = tag;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.zhy.base;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ViewHolder工厂缓存，每个ViewHolder类只解析一次。
+ * 优先使用注解处理器生成的工厂，没有生成时使用缓存的构造方法
+ */
+public final class ViewHolderFactories {
+    static final String FACTORY_SUFFIX = "_Factory";
+
+    private static final Map<Class<?>, ViewHolderFactory<?>> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ViewHolderFactory<?>> ADAPTER_FACTORIES = new ConcurrentHashMap<>();
+
+    private ViewHolderFactories() {
+    }
+
+    /**
+     * 获取ViewHolder类对应的工厂
+     *
+     * @param holderClass
+     * @return
+     */
+    public static <VH extends RecyclerView.ViewHolder> ViewHolderFactory<VH> get(Class<VH> holderClass) {
+        ViewHolderFactory<?> factory = FACTORIES.get(holderClass);
+        if (factory == null) {
+            factory = createFactory(holderClass);
+            FACTORIES.put(holderClass, factory);
+        }
+        return (ViewHolderFactory<VH>) factory;
+    }
+
+    /**
+     * 根据泛型参数获取工厂，结果按照子类缓存
+     *
+     * @param subClass     子类
+     * @param genericClass 声明ViewHolder泛型的父类
+     * @param typeArgIndex ViewHolder泛型参数的位置
+     * @return
+     */
+    static <VH extends RecyclerView.ViewHolder> ViewHolderFactory<VH> getByTypeArgument(Class<?> subClass, Class<?> genericClass, int typeArgIndex) {
+        ViewHolderFactory<?> factory = ADAPTER_FACTORIES.get(subClass);
+        if (factory == null) {
+            factory = get(resolveTypeArgument(subClass, genericClass, typeArgIndex));
+            ADAPTER_FACTORIES.put(subClass, factory);
+        }
+        return (ViewHolderFactory<VH>) factory;
+    }
+
+    private static Class resolveTypeArgument(Class<?> subClass, Class<?> genericClass, int typeArgIndex) {
+        Class<?> clazz = subClass;
+        while (clazz != null && clazz != genericClass) {
+            final Type type = clazz.getGenericSuperclass();
+            if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == genericClass) {
+                final Type arg = ((ParameterizedType) type).getActualTypeArguments()[typeArgIndex];
+                if (arg instanceof Class)
+                    return (Class) arg;
+                if (arg instanceof ParameterizedType)
+                    return (Class) ((ParameterizedType) arg).getRawType();
+                break;
+            }
+            clazz = clazz.getSuperclass();
+        }
+        throw new IllegalStateException("can not resolve ViewHolder class of " + subClass.getName()
+                + ", override getViewHolderFactory() instead");
+    }
+
+    private static <VH extends RecyclerView.ViewHolder> ViewHolderFactory<VH> createFactory(Class<VH> holderClass) {
+        final String name = holderClass.getName();
+        final int index = name.lastIndexOf('.');
+        final String factoryName = name.substring(0, index + 1) + name.substring(index + 1).replace('$', '_') + FACTORY_SUFFIX;
+        try {
+            final Class<?> factoryClass = Class.forName(factoryName, true, holderClass.getClassLoader());
+            return (ViewHolderFactory<VH>) factoryClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            // 没有生成工厂，使用构造方法
+        } catch (Exception e) {
+            throw new IllegalStateException("create factory failed:" + factoryName, e);
+        }
+
+        try {
+            final Constructor<VH> constructor = holderClass.getDeclaredConstructor(View.class);
+            constructor.setAccessible(true);
+            return new ConstructorFactory<>(constructor);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(name + " must have a constructor with View parameter", e);
+        }
+    }
+
+    private static final class ConstructorFactory<VH extends RecyclerView.ViewHolder> implements ViewHolderFactory<VH> {
+        private final Constructor<VH> mConstructor;
+
+        ConstructorFactory(Constructor<VH> constructor) {
+            mConstructor = constructor;
+        }
+
+        @Override
+        public VH create(View itemView) {
+            try {
+                return mConstructor.newInstance(itemView);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
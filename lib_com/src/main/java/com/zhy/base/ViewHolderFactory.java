@@ -0,0 +1,18 @@
+package com.zhy.base;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * ViewHolder工厂，直接调用构造方法创建ViewHolder
+ */
+public interface ViewHolderFactory<VH extends RecyclerView.ViewHolder> {
+    /**
+     * 创建ViewHolder
+     *
+     * @param itemView
+     * @return
+     */
+    VH create(View itemView);
+}
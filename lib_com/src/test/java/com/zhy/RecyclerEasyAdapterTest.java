@@ -0,0 +1,145 @@
+package com.zhy;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RecyclerEasyAdapterTest {
+    /**
+     * 大于Integer缓存范围，位置装箱时一定会分配
+     */
+    private static final int ITEM_COUNT = 1000;
+    private static final int BIND_COUNT = 10000;
+    /**
+     * 任何一次绑定分配一个对象，10000次绑定都会超过该值，留出测量本身的误差
+     */
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    private Context context;
+    private RecyclerView parent;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+    }
+
+    @Test
+    public void bindListenerOnCreate_steadyStateBindAllocatesNoListeners() {
+        final TestAdapter adapter = new TestAdapter(true);
+        adapter.setBindListenerOnCreate(true);
+        final RecyclerView.ViewHolder holder = adapter.createViewHolder(parent, 0);
+        final View.OnClickListener clickListener = shadowOf(holder.itemView).getOnClickListener();
+        final View.OnLongClickListener longClickListener = shadowOf(holder.itemView).getOnLongClickListener();
+        assertNotNull(clickListener);
+        assertNotNull(longClickListener);
+
+        for (int i = 0; i < BIND_COUNT; i++) {
+            adapter.bindViewHolder(holder, i % ITEM_COUNT);
+            // 监听不会被替换，也不会为位置装箱设置tag
+            assertSame(clickListener, shadowOf(holder.itemView).getOnClickListener());
+            assertSame(longClickListener, shadowOf(holder.itemView).getOnLongClickListener());
+            assertNull(holder.itemView.getTag());
+        }
+    }
+
+    @Test
+    public void bindListenerOnCreate_steadyStateBindAllocatesNearZeroBytes() {
+        final TestAdapter adapter = new TestAdapter(true);
+        adapter.setBindListenerOnCreate(true);
+        final RecyclerView.ViewHolder holder = adapter.createViewHolder(parent, 0);
+
+        final long allocated = measureBindAllocatedBytes(adapter, holder);
+        assertTrue("allocated " + allocated + " bytes in " + BIND_COUNT + " binds", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void bindListenerOnBind_allocationIsMeasured() {
+        // 对照：每次绑定设置tag会装箱位置，确认测量能发现绑定中的分配
+        final TestAdapter adapter = new TestAdapter(false);
+        final RecyclerView.ViewHolder holder = adapter.createViewHolder(parent, 0);
+
+        final long allocated = measureBindAllocatedBytes(adapter, holder);
+        assertTrue("allocated " + allocated + " bytes in " + BIND_COUNT + " binds", allocated > MAX_ALLOCATED_BYTES);
+    }
+
+    /**
+     * 预热一轮后统计当前线程在BIND_COUNT次绑定中分配的字节数，
+     * 直接调用onBindViewHolder，不计入RecyclerView自身的统计和trace
+     */
+    private static long measureBindAllocatedBytes(TestAdapter adapter, RecyclerView.ViewHolder holder) {
+        for (int i = 0; i < BIND_COUNT; i++) {
+            adapter.onBindViewHolder(holder, i % ITEM_COUNT);
+        }
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < BIND_COUNT; i++) {
+            adapter.onBindViewHolder(holder, i % ITEM_COUNT);
+        }
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    @Test
+    public void bindListenerOnCreate_missingDispatchFailsOnBind() {
+        final TestAdapter adapter = new TestAdapter(false);
+        adapter.setBindListenerOnCreate(true);
+        final RecyclerView.ViewHolder holder = adapter.createViewHolder(parent, 0);
+        try {
+            adapter.bindViewHolder(holder, 0);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static final class TestAdapter extends RecyclerEasyAdapter<RecyclerView.ViewHolder> {
+        private final boolean dispatchCreated;
+
+        TestAdapter(boolean dispatchCreated) {
+            this.dispatchCreated = dispatchCreated;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final RecyclerView.ViewHolder holder = new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+            if (dispatchCreated) {
+                dispatchViewHolderCreated(holder);
+            }
+            return holder;
+        }
+
+        @Override
+        public void whenBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return ITEM_COUNT;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.zhy.base;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedUploadTest {
+    private static final int CHUNK_SIZE = 1024;
+    private static final int FILE_SIZE = CHUNK_SIZE * 10 + 300;
+    private static final long FAIL_OFFSET = CHUNK_SIZE * 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private File journal;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[FILE_SIZE];
+        new Random(1).nextBytes(content);
+        file = new File(folder.getRoot(), "upload.bin");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        journal = new File(folder.getRoot(), "chunked.journal");
+    }
+
+    @Test
+    public void interruptedMidChunk_resumesFromJournalOffset() throws IOException {
+        final FakeServer server = new FakeServer();
+        final ChunkedUpload upload = new ChunkedUpload(journal, CHUNK_SIZE);
+        server.failAt = FAIL_OFFSET;
+        uploadExpectingFailure(upload, server);
+        assertTrue(journal.exists());
+
+        final String result = upload.upload(file.getPath(), server, null);
+
+        assertEquals(1, server.beginCount);
+        assertEquals(FAIL_OFFSET, server.resumedFrom());
+        assertEquals("done:" + FILE_SIZE, result);
+        assertArrayEquals(content, server.received());
+    }
+
+    @Test
+    public void newInstanceOnSameJournal_resumesSession() throws IOException {
+        final FakeServer server = new FakeServer();
+        server.failAt = FAIL_OFFSET;
+        uploadExpectingFailure(new ChunkedUpload(journal, CHUNK_SIZE), server);
+
+        // 模拟进程重启，使用新的实例读取同一个记录文件
+        final ChunkedUpload restarted = new ChunkedUpload(journal, CHUNK_SIZE);
+        restarted.upload(file.getPath(), server, null);
+
+        assertEquals(1, server.beginCount);
+        assertEquals(FAIL_OFFSET, server.resumedFrom());
+        assertArrayEquals(content, server.received());
+    }
+
+    @Test
+    public void completedUpload_deletesJournal() throws IOException {
+        final FakeServer server = new FakeServer();
+        final ChunkedUpload upload = new ChunkedUpload(journal, CHUNK_SIZE);
+        server.failAt = FAIL_OFFSET;
+        uploadExpectingFailure(upload, server);
+        upload.upload(file.getPath(), server, null);
+
+        assertFalse(journal.exists());
+
+        // 完成后再次上传同一个文件从头开始新的会话
+        upload.upload(file.getPath(), server, null);
+        assertEquals(2, server.beginCount);
+        assertFalse(journal.exists());
+    }
+
+    private void uploadExpectingFailure(ChunkedUpload upload, FakeServer server) {
+        try {
+            upload.upload(file.getPath(), server, null);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * 进程内的服务端替身，按会话保存已确认的数据，只接受从已确认偏移开始的块。
+     * 在指定偏移处只接收半块后断开，模拟上传中途网络中断
+     */
+    private static final class FakeServer implements ChunkedUpload.ChunkSender {
+        private final Map<String, ByteArrayOutputStream> mSessions = new HashMap<>();
+        private final List<Long> mOffsets = new ArrayList<>();
+        private String mLastSession;
+        long failAt = -1;
+        int beginCount;
+
+        @Override
+        public String begin(String path, long totalLength) {
+            beginCount++;
+            mLastSession = "session-" + beginCount;
+            mSessions.put(mLastSession, new ByteArrayOutputStream());
+            mOffsets.clear();
+            return mLastSession;
+        }
+
+        @Override
+        public void sendChunk(String session, byte[] buffer, int length, long offset, long totalLength) throws IOException {
+            final ByteArrayOutputStream stored = mSessions.get(session);
+            if (stored == null)
+                throw new IOException("unknown session:" + session);
+            if (offset != stored.size())
+                throw new IOException("unexpected offset:" + offset + " confirmed:" + stored.size());
+
+            mOffsets.add(offset);
+            if (offset == failAt) {
+                failAt = -1;
+                throw new IOException("connection reset after " + length / 2 + " bytes");
+            }
+            stored.write(buffer, 0, length);
+        }
+
+        @Override
+        public String complete(String session, long totalLength) throws IOException {
+            final ByteArrayOutputStream stored = mSessions.get(session);
+            if (stored.size() != totalLength)
+                throw new IOException("incomplete:" + stored.size());
+            return "done:" + totalLength;
+        }
+
+        /**
+         * 中断后第一次发送的偏移
+         */
+        long resumedFrom() {
+            final int failed = mOffsets.indexOf(FAIL_OFFSET);
+            return mOffsets.get(failed + 1);
+        }
+
+        byte[] received() {
+            return mSessions.get(mLastSession).toByteArray();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.zhy.base;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File journal;
+
+    @Before
+    public void setUp() {
+        journal = new File(folder.getRoot(), "queue.journal");
+    }
+
+    @Test
+    public void runningUploads_neverExceedMaxParallelism() throws IOException {
+        final HoldingUploader uploader = new HoldingUploader();
+        final UploadQueue queue = new UploadQueue(journal, uploader);
+        queue.setMaxParallelism(2);
+
+        queue.enqueue(Arrays.asList("a", "b", "c", "d", "e"));
+        assertEquals(2, uploader.held.size());
+
+        while (!uploader.held.isEmpty()) {
+            uploader.held.remove(0).onSuccess("ok");
+            assertTrue(uploader.held.size() <= 2);
+        }
+        assertEquals(2, uploader.maxRunning);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), uploader.started);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void resume_afterTornTrailingRecord_uploadsOnlyUnfinishedFiles() throws IOException {
+        final HoldingUploader uploader = new HoldingUploader();
+        final UploadQueue queue = new UploadQueue(journal, uploader);
+        queue.setMaxParallelism(2);
+        final long batchId = queue.enqueue(Arrays.asList("a", "b", "c", "d"));
+        uploader.held.remove(0).onSuccess("url-a");
+        uploader.held.remove(0).onError("failed-b");
+
+        // 进程在写入下一条记录时被杀，只留下半条记录
+        final FileOutputStream out = new FileOutputStream(journal, true);
+        try {
+            out.write(new byte[]{2, 0, 0, 0});
+        } finally {
+            out.close();
+        }
+
+        final ImmediateUploader restartedUploader = new ImmediateUploader();
+        final RecordingListener listener = new RecordingListener();
+        final UploadQueue restarted = new UploadQueue(journal, restartedUploader);
+        restarted.setListener(listener);
+        restarted.resumePending();
+        restarted.resumePending(); //重复调用不会重复上传
+
+        assertEquals(Arrays.asList("c", "d"), restartedUploader.started);
+        assertEquals(1, listener.batches.size());
+        final BatchResult result = listener.batches.get(0);
+        assertEquals(3, result.getSucceeded().size());
+        assertEquals(1, result.getFailed().size());
+        assertEquals("b", result.getFailed().get(0).path);
+        assertEquals(Collections.singletonList(batchId), listener.batchIds);
+        assertEquals(0, restarted.getPendingCount());
+
+        // 半条记录已被丢弃，之后追加的记录可以正常读取
+        final long nextId = restarted.enqueue(Collections.singletonList("e"));
+        final UploadQueue again = new UploadQueue(journal, new ImmediateUploader());
+        again.resumePending();
+        assertTrue(again.enqueue(Collections.singletonList("f")) > nextId);
+    }
+
+    @Test
+    public void batchIds_notReusedAfterCompaction() throws IOException {
+        final ImmediateUploader uploader = new ImmediateUploader();
+        final UploadQueue queue = new UploadQueue(journal, uploader);
+        queue.setListener(new RecordingListener()); //回调后才会移除批次
+        long lastId = 0;
+        for (int i = 0; i < 200; i++) { //每个批次立即完成并移除，触发多次压缩
+            final long id = queue.enqueue(Collections.singletonList("file-" + i));
+            assertTrue(id > lastId);
+            lastId = id;
+        }
+        assertEquals(0, queue.getPendingCount());
+        assertTrue("journal should be compacted, length=" + journal.length(), journal.length() < 1024);
+
+        final UploadQueue restarted = new UploadQueue(journal, uploader);
+        restarted.resumePending();
+        assertTrue(restarted.enqueue(Collections.singletonList("next")) > lastId);
+    }
+
+    @Test
+    public void resumeBeforeListenerIsSet_reportsFinishedBatchAfterSetListener() throws IOException {
+        final HoldingUploader uploader = new HoldingUploader();
+        final UploadQueue queue = new UploadQueue(journal, uploader);
+        final long batchId = queue.enqueue(Arrays.asList("a", "b"));
+        uploader.held.remove(0).onSuccess("url-a");
+        uploader.held.remove(0).onSuccess("url-b"); //没有监听，批次保留在日志中
+
+        // 模拟重启后在设置监听之前开始继续上传
+        final ImmediateUploader restartedUploader = new ImmediateUploader();
+        final UploadQueue restarted = new UploadQueue(journal, restartedUploader);
+        restarted.resumePending();
+        assertTrue(restartedUploader.started.isEmpty());
+
+        final RecordingListener listener = new RecordingListener();
+        restarted.setListener(listener);
+        assertEquals(Collections.singletonList(batchId), listener.batchIds);
+        assertEquals(2, listener.batches.get(0).getSucceeded().size());
+
+        // 回调后已移除，再次启动不会重复回调
+        final RecordingListener againListener = new RecordingListener();
+        final UploadQueue again = new UploadQueue(journal, new ImmediateUploader());
+        again.setListener(againListener);
+        again.resumePending();
+        assertTrue(againListener.batchIds.isEmpty());
+    }
+
+    /**
+     * 保留回调，由测试决定上传何时结束
+     */
+    private static final class HoldingUploader implements UploadQueue.Uploader {
+        final List<UploadQueue.Callback> held = new ArrayList<>();
+        final List<String> started = new ArrayList<>();
+        int maxRunning;
+
+        @Override
+        public void upload(String path, UploadQueue.Callback callback) {
+            started.add(path);
+            held.add(callback);
+            maxRunning = Math.max(maxRunning, held.size());
+        }
+    }
+
+    /**
+     * 同步回调成功
+     */
+    private static final class ImmediateUploader implements UploadQueue.Uploader {
+        final List<String> started = new ArrayList<>();
+
+        @Override
+        public void upload(String path, UploadQueue.Callback callback) {
+            started.add(path);
+            callback.onSuccess("url-" + path);
+        }
+    }
+
+    private static final class RecordingListener implements UploadQueue.Listener {
+        final List<Long> batchIds = new ArrayList<>();
+        final List<BatchResult> batches = new ArrayList<>();
+
+        @Override
+        public void onFileFinished(long batchId, BatchResult.FileResult result) {
+        }
+
+        @Override
+        public void onBatchFinished(long batchId, BatchResult result) {
+            batchIds.add(batchId);
+            batches.add(result);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.zhy.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为标记了com.zhy.base.EasyViewHolder的ViewHolder生成ViewHolderFactory，
+ * 生成的工厂直接调用构造方法，不需要反射
+ */
+public class ViewHolderFactoryProcessor extends AbstractProcessor {
+    private static final String ANNOTATION = "com.zhy.base.EasyViewHolder";
+    private static final String FACTORY_INTERFACE = "com.zhy.base.ViewHolderFactory";
+    private static final String VIEW = "android.view.View";
+    private static final String FACTORY_SUFFIX = "_Factory";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@EasyViewHolder can only be applied to classes");
+                    continue;
+                }
+                generateFactory((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generateFactory(TypeElement holder) {
+        if (!checkHolder(holder))
+            return;
+
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(holder);
+        final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        final String holderName = holder.getQualifiedName().toString();
+        final String simpleName = packageName.isEmpty() ? holderName : holderName.substring(packageName.length() + 1);
+        final String factoryName = simpleName.replace('.', '_') + FACTORY_SUFFIX;
+
+        final StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * Generated by ViewHolderFactoryProcessor, do not edit\n */\n");
+        sb.append("public final class ").append(factoryName)
+                .append(" implements ").append(FACTORY_INTERFACE).append('<').append(holderName).append("> {\n");
+        sb.append("    @Override\n");
+        sb.append("    public ").append(holderName).append(" create(").append(VIEW).append(" itemView) {\n");
+        sb.append("        return new ").append(holderName).append("(itemView);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        final String qualifiedFactoryName = packageName.isEmpty() ? factoryName : packageName + "." + factoryName;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedFactoryName, holder);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(sb.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(holder, "generate " + qualifiedFactoryName + " failed:" + e.getMessage());
+        }
+    }
+
+    private boolean checkHolder(TypeElement holder) {
+        final Set<Modifier> modifiers = holder.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT)) {
+            error(holder, "@EasyViewHolder class must not be abstract");
+            return false;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            error(holder, "@EasyViewHolder class must not be private");
+            return false;
+        }
+        if (holder.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(holder, "@EasyViewHolder nested class must be static");
+            return false;
+        }
+        if (holder.getNestingKind() == NestingKind.LOCAL || holder.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(holder, "@EasyViewHolder class must be top level or static nested");
+            return false;
+        }
+
+        for (Element enclosed : holder.getEnclosedElements()) {
+            if (enclosed.getKind() != ElementKind.CONSTRUCTOR)
+                continue;
+
+            final ExecutableElement constructor = (ExecutableElement) enclosed;
+            final List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() == 1
+                    && VIEW.equals(parameters.get(0).asType().toString())
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(holder, "@EasyViewHolder class must have a non-private constructor with View parameter");
+        return false;
+    }
+
+    private void error(Element element, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+    }
+}